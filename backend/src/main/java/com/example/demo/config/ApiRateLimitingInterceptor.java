@@ -1,46 +1,171 @@
 package com.example.demo.config;
 
-import io.github.bucket4j.Bucket;
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.util.ClientAddress;
+import com.example.demo.util.JwtPrincipal;
+import com.example.demo.util.RateLimitBucket;
+import com.example.demo.util.RateLimiterTable;
+import com.example.demo.util.RouteMatcher;
+import com.example.demo.util.SessionPrincipal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.bucket4j.ConsumptionProbe;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 按策略限流：策略在启动时编译为RouteMatcher，请求时按路径、方法和角色选出策略，
+// 已登录用户按用户计数，未登录按客户端IP计数（/api/v2/auth/**已在WebConfig中排除）
 @Component
 public class ApiRateLimitingInterceptor implements HandlerInterceptor {
 
-    @Autowired
-    private RateLimitingConfig rateLimitingConfig;
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+    // 用户键的高64位，位于ClientAddress保留的地址空间内，不会与IP键重叠
+    private static final long USER_ID_KEY_HIGH = 0x0200_0000_0000_0000L;
+    private static final long USERNAME_KEY_HIGH = 0x0300_0000_0000_0000L;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final ThreadLocal<long[]> KEY_SCRATCH = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final RateLimitingConfig rateLimitingConfig;
+    private final ObjectMapper objectMapper;
+    private final RouteMatcher matcher = new RouteMatcher();
+    private final RateLimiterTable[] policyTables;
+    // 策略中出现的角色，下标即角色位
+    private final String[] roleAuthorities;
+
+    public ApiRateLimitingInterceptor(RateLimitingConfig rateLimitingConfig,
+                                      RateLimitPolicyProperties properties,
+                                      ObjectMapper objectMapper) {
+        this.rateLimitingConfig = rateLimitingConfig;
+        this.objectMapper = objectMapper;
+
+        List<String> roles = new ArrayList<>();
+        List<RateLimitPolicyProperties.Policy> policies = properties.getPolicies();
+        this.policyTables = new RateLimiterTable[policies.size()];
+        for (int i = 0; i < policies.size(); i++) {
+            RateLimitPolicyProperties.Policy policy = policies.get(i);
+            if (policy.getPattern() == null || policy.getLimit() <= 0 || policy.getPeriodSeconds() <= 0) {
+                throw new IllegalArgumentException("限流策略配置不完整: " + policy.getName());
+            }
+
+            int methodMask = 0;
+            for (String method : policy.getMethods()) {
+                methodMask |= RouteMatcher.methodBit(method.trim().toUpperCase());
+            }
+            long roleMask = RouteMatcher.ANY_ROLE;
+            for (String role : policy.getRoles()) {
+                String authority = "ROLE_" + role.trim().toUpperCase();
+                int bit = roles.indexOf(authority);
+                if (bit < 0) {
+                    if (roles.size() == Long.SIZE) {
+                        throw new IllegalArgumentException("限流策略中的角色过多");
+                    }
+                    roles.add(authority);
+                    bit = roles.size() - 1;
+                }
+                roleMask |= 1L << bit;
+            }
+
+            matcher.add(policy.getPattern(), methodMask == 0 ? RouteMatcher.ANY_METHOD : methodMask, roleMask);
+            String name = policy.getName() != null ? policy.getName() : "policy-" + i;
+            policyTables[i] = rateLimitingConfig.createTable(name, policy.getLimit(),
+                    Duration.ofSeconds(policy.getPeriodSeconds()), policy.getLeaseBatch());
+        }
+        this.roleAuthorities = roles.toArray(new String[0]);
+    }
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
-        // Exclude auth endpoints from general API rate limiting
-        if (request.getRequestURI().startsWith("/api/v2/auth")) {
-            return true;
-        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean authenticated = authentication != null && authentication.isAuthenticated()
+                && !"anonymousUser".equals(authentication.getPrincipal());
 
-        String clientIp = getClientIpAddress(request);
-        Bucket bucket = rateLimitingConfig.getApiBucket(clientIp);
+        int policy = matcher.match(request.getRequestURI(), request.getContextPath().length(),
+                RouteMatcher.methodBit(request.getMethod()), authenticated ? roleMask(authentication) : 0L);
 
-        if (!bucket.tryConsume(1)) {
+        long[] key = KEY_SCRATCH.get();
+        if (!authenticated || !resolveUserKey(request, authentication, key)) {
+            ClientAddress.parse(request, key);
+        }
+        RateLimitBucket bucket = policy >= 0
+                ? policyTables[policy].get(key[0], key[1])
+                : rateLimitingConfig.getApiBucket(key[0], key[1]);
+
+        // 集群模式下剩余数为本节点租约内的余额
+        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+        response.setHeader(REMAINING_HEADER, Long.toString(probe.getRemainingTokens()));
+        if (!probe.isConsumed()) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(probe.getNanosToWaitForRefill() + 999_999_999L));
             response.setStatus(429); // Too Many Requests
-            response.getWriter().write("API请求过于频繁，请稍后再试");
-            response.setContentType("application/json;charset=UTF-8");
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write(objectMapper.writeValueAsString(ApiResponse.error("API请求过于频繁，请稍后再试")));
             return false;
         }
         return true;
     }
 
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
+    private long roleMask(Authentication authentication) {
+        if (roleAuthorities.length == 0) {
+            return 0L;
+        }
+        long mask = 0L;
+        for (GrantedAuthority granted : authentication.getAuthorities()) {
+            String authority = granted.getAuthority();
+            for (int bit = 0; bit < roleAuthorities.length; bit++) {
+                if (roleAuthorities[bit].equals(authority)) {
+                    mask |= 1L << bit;
+                }
+            }
+        }
+        return mask;
+    }
+
+    // 优先使用JWT或会话中的用户ID，旧版令牌没有ID时按用户名哈希
+    private boolean resolveUserKey(HttpServletRequest request, Authentication authentication, long[] key) {
+        Object attribute = request.getAttribute(JwtAuthenticationFilter.VERIFIED_PRINCIPAL_ATTRIBUTE);
+        if (attribute instanceof JwtPrincipal && ((JwtPrincipal) attribute).getUserId() != null) {
+            key[0] = USER_ID_KEY_HIGH;
+            key[1] = ((JwtPrincipal) attribute).getUserId();
+            return true;
+        }
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            Object sessionPrincipal = session.getAttribute(SessionPrincipal.SESSION_ATTRIBUTE);
+            if (sessionPrincipal instanceof SessionPrincipal && ((SessionPrincipal) sessionPrincipal).getUserId() != null) {
+                key[0] = USER_ID_KEY_HIGH;
+                key[1] = ((SessionPrincipal) sessionPrincipal).getUserId();
+                return true;
+            }
+        }
+
+        String username = authentication.getName();
+        if (username == null) {
+            return false;
         }
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < username.length(); i++) {
+            hash ^= username.charAt(i);
+            hash *= FNV_PRIME;
         }
-        return request.getRemoteAddr();
+        key[0] = USERNAME_KEY_HIGH;
+        key[1] = hash;
+        return true;
     }
 }
@@ -0,0 +1,102 @@
+package com.example.demo.config;
+
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.util.AdaptiveConcurrencyLimiter;
+import com.example.demo.util.AdaptiveConcurrencyLimiter.Priority;
+import com.example.demo.util.RouteMatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.List;
+
+// 自适应并发限制：数据库变慢导致延迟上升时自动收缩并发上限，超出的请求直接返回503，
+// 避免请求堆积在Tomcat线程上。按路径划分优先级，过载时先拒绝批量接口，登录和当前用户接口最后才受影响
+@Component
+public class ConcurrencyLimitingInterceptor implements HandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = ConcurrencyLimitingInterceptor.class.getName() + ".START";
+    private static final String PRIORITY_ATTRIBUTE = ConcurrencyLimitingInterceptor.class.getName() + ".PRIORITY";
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final ObjectMapper objectMapper;
+    // 路由序号对应的优先级
+    private final RouteMatcher matcher = new RouteMatcher();
+    private final Priority[] routePriorities;
+
+    public ConcurrencyLimitingInterceptor(
+            @Value("${concurrency-limit.initial-limit:50}") int initialLimit,
+            @Value("${concurrency-limit.min-limit:10}") int minLimit,
+            @Value("${concurrency-limit.max-limit:200}") int maxLimit,
+            @Value("${concurrency-limit.tolerance:2.0}") double tolerance,
+            @Value("${concurrency-limit.critical-paths:/api/v2/auth/**,/api/auth/**}") List<String> criticalPaths,
+            @Value("${concurrency-limit.bulk-paths:/api/users/export,/api/users/import,/api/roles/with-permissions}") List<String> bulkPaths,
+            MeterRegistry meterRegistry,
+            ObjectMapper objectMapper) {
+        this.limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, tolerance);
+        this.objectMapper = objectMapper;
+
+        this.routePriorities = new Priority[criticalPaths.size() + bulkPaths.size()];
+        for (String path : criticalPaths) {
+            routePriorities[matcher.add(path.trim(), RouteMatcher.ANY_METHOD, RouteMatcher.ANY_ROLE)] = Priority.CRITICAL;
+        }
+        for (String path : bulkPaths) {
+            routePriorities[matcher.add(path.trim(), RouteMatcher.ANY_METHOD, RouteMatcher.ANY_ROLE)] = Priority.BULK;
+        }
+
+        Gauge.builder("http.server.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("当前自适应并发上限")
+                .register(meterRegistry);
+        Gauge.builder("http.server.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInflight)
+                .description("正在处理的请求数")
+                .register(meterRegistry);
+        for (Priority priority : Priority.values()) {
+            FunctionCounter.builder("http.server.concurrency.rejected", limiter, l -> l.getRejected(priority))
+                    .description("因超出并发上限被拒绝的请求数")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        int route = matcher.match(request.getRequestURI(), request.getContextPath().length(),
+                RouteMatcher.methodBit(request.getMethod()), RouteMatcher.ANY_ROLE);
+        Priority priority = route >= 0 ? routePriorities[route] : Priority.NORMAL;
+
+        if (!limiter.tryAcquire(priority)) {
+            response.setStatus(503);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write(objectMapper.writeValueAsString(ApiResponse.error("服务繁忙，请稍后再试")));
+            return false;
+        }
+
+        request.setAttribute(PRIORITY_ATTRIBUTE, priority);
+        request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    // 只有preHandle放行的请求才会进入这里
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (!(start instanceof Long)) {
+            return;
+        }
+        request.removeAttribute(START_ATTRIBUTE);
+
+        // 批量接口的耗时主要取决于数据量，不作为延迟样本
+        long rtt = request.getAttribute(PRIORITY_ATTRIBUTE) == Priority.BULK ? -1 : System.nanoTime() - (Long) start;
+        limiter.release(rtt);
+    }
+}
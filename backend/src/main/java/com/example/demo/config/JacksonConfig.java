@@ -0,0 +1,18 @@
+package com.example.demo.config;
+
+import com.fasterxml.jackson.datatype.hibernate6.Hibernate6Module;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// 关闭open-in-view后，响应序列化时会话已关闭：未加载的延迟关联输出为null，不触发查询也不抛出LazyInitializationException
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public Hibernate6Module hibernate6Module() {
+        Hibernate6Module module = new Hibernate6Module();
+        // 实体没有@Transient字段需要隐藏，保持原有的序列化结果
+        module.disable(Hibernate6Module.Feature.USE_TRANSIENT_ANNOTATION);
+        return module;
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.demo.config;
 
+import com.example.demo.service.TokenRevocationService;
+import com.example.demo.service.UserSecurityVersionService;
 import com.example.demo.service.UserService;
-import com.example.demo.util.JwtUtil;
+import com.example.demo.util.JwtPrincipal;
+import com.example.demo.util.JwtTokenCache;
+import com.example.demo.util.JwtVerification;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,63 +13,126 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    // 已验证的JwtPrincipal保存在请求属性中，供控制器复用，避免重复解析
+    public static final String VERIFIED_PRINCIPAL_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".PRINCIPAL";
+
+    // 告警日志限流窗口：窗口内只输出一条，其余计数后合并输出
+    private static final long WARN_INTERVAL_MILLIS = 10_000L;
+
+    private final AtomicLong lastWarnAt = new AtomicLong();
+    private final AtomicLong suppressedWarnings = new AtomicLong();
+
     @Autowired
-    private JwtUtil jwtUtil;
+    private JwtTokenCache jwtTokenCache;
 
     @Autowired
     @Lazy
     private UserService userService;
 
+    @Autowired
+    private UserSecurityVersionService userSecurityVersionService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                     FilterChain filterChain) throws ServletException, IOException {
         
         final String requestTokenHeader = request.getHeader("Authorization");
         
-        String username = null;
-        String jwtToken = null;
-        
         // JWT Token格式: "Bearer token"
         if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
-            jwtToken = requestTokenHeader.substring(7);
-            try {
-                username = jwtUtil.getUsernameFromToken(jwtToken);
-            } catch (Exception e) {
-                logger.warn("JWT Token解析失败: " + e.getMessage());
-            }
-        }
-        
-        // 验证token并设置认证上下文
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String jwtToken = requestTokenHeader.substring(7);
             
-            try {
-                // 验证token有效性（不需要UserDetails，直接验证JWT）
-                if (jwtUtil.validateTokenFormat(jwtToken)) {
-                    // 获取用户信息用于权限设置
-                    UserDetails userDetails = userService.loadUserByUsername(username);
-                    
-                    UsernamePasswordAuthenticationToken authToken = 
-                        new UsernamePasswordAuthenticationToken(
-                            userDetails, null, userDetails.getAuthorities());
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
+            // 只解析和验签一次，重复的token直接命中缓存
+            JwtVerification verification = jwtTokenCache.verify(jwtToken);
+            if (!verification.isValid()) {
+                warnRateLimited("JWT Token验证失败: " + verification.getStatus());
+            } else {
+                JwtPrincipal principal = verification.getPrincipal();
+                request.setAttribute(VERIFIED_PRINCIPAL_ATTRIBUTE, principal);
+                
+                // 设置认证上下文
+                if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                    if (principal.isRefreshToken()) {
+                        warnRateLimited("刷新令牌不能用于接口认证");
+                    } else if (tokenRevocationService.isRevoked(principal)) {
+                        warnRateLimited("JWT令牌已注销: " + principal.getSubject());
+                    } else if (principal.isSelfContained()) {
+                        authenticateFromClaims(principal, request);
+                    } else {
+                        authenticateFromDatabase(principal, request);
+                    }
                 }
-            } catch (Exception e) {
-                logger.warn("JWT认证失败: " + e.getMessage());
             }
         }
         
         filterChain.doFilter(request, response);
     }
-} 
\ No newline at end of file
+
+    // 自包含令牌：仅凭claims构建认证信息，不访问数据库
+    private void authenticateFromClaims(JwtPrincipal principal, HttpServletRequest request) {
+        if (!userSecurityVersionService.isCurrent(principal.getUserId(), principal.getSecurityVersion())) {
+            warnRateLimited("JWT令牌已被撤销: " + principal.getSubject());
+            return;
+        }
+        
+        List<GrantedAuthority> authorities = new ArrayList<>(principal.getAuthorities().size());
+        for (String authority : principal.getAuthorities()) {
+            authorities.add(new SimpleGrantedAuthority(authority));
+        }
+        
+        UsernamePasswordAuthenticationToken authToken =
+            new UsernamePasswordAuthenticationToken(principal.getSubject(), null, authorities);
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
+    
+    // 兼容旧版令牌：不含用户ID和权限claim时回退到数据库加载
+    private void authenticateFromDatabase(JwtPrincipal principal, HttpServletRequest request) {
+        try {
+            // 只取用户名和角色，不校验密码，使用快照缓存
+            UserDetails userDetails = userService.findSnapshotByUsername(principal.getSubject())
+                .map(userService::buildUserDetails)
+                .orElseThrow(() -> new UsernameNotFoundException("用户不存在: " + principal.getSubject()));
+            
+            UsernamePasswordAuthenticationToken authToken = 
+                new UsernamePasswordAuthenticationToken(
+                    userDetails, null, userDetails.getAuthorities());
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authToken);
+        } catch (Exception e) {
+            warnRateLimited("JWT认证失败: " + e.getMessage());
+        }
+    }
+
+    // 限流输出告警，防止扫描流量刷屏
+    private void warnRateLimited(String message) {
+        long now = System.currentTimeMillis();
+        long last = lastWarnAt.get();
+        if (now - last >= WARN_INTERVAL_MILLIS && lastWarnAt.compareAndSet(last, now)) {
+            long suppressed = suppressedWarnings.getAndSet(0);
+            logger.warn(suppressed > 0 ? message + "（期间另有" + suppressed + "条告警已省略）" : message);
+        } else {
+            suppressedWarnings.incrementAndGet();
+        }
+    }
+}
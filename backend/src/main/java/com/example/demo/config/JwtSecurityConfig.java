@@ -6,6 +6,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -23,6 +24,7 @@ import java.util.List;
 
 @Configuration
 @EnableWebSecurity
+@EnableMethodSecurity // 接口上的@PreAuthorize按权限代码检查（见RolePermissionEvaluator）
 public class JwtSecurityConfig {
     
     @Autowired
@@ -61,6 +63,8 @@ public class JwtSecurityConfig {
                 .requestMatchers("/api/roles/**").hasRole("ADMIN")
                 // 权限管理 - 需要ADMIN角色
                 .requestMatchers("/api/permissions/**").hasRole("ADMIN")
+                // 全局搜索 - 需要ADMIN或MANAGER角色（非ADMIN只能搜索用户）
+                .requestMatchers("/api/search/**").hasAnyRole("ADMIN", "MANAGER")
                 // 其他端点需要认证
                 .anyRequest().authenticated()
             )
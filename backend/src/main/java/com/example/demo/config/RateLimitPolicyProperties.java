@@ -0,0 +1,95 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 接口限流策略（rate-limit.policies），按声明顺序匹配，第一条命中的策略生效；
+// 都不匹配时使用默认的每分钟100次。已登录用户按用户计数，未登录按客户端IP计数
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitPolicyProperties {
+
+    private List<Policy> policies = new ArrayList<>();
+
+    public List<Policy> getPolicies() {
+        return policies;
+    }
+
+    public void setPolicies(List<Policy> policies) {
+        this.policies = policies;
+    }
+
+    public static class Policy {
+
+        private String name;
+        // 路径模式，支持 *、{变量} 和末尾的 **
+        private String pattern;
+        // 为空表示所有方法
+        private List<String> methods = new ArrayList<>();
+        // 为空表示所有用户（包括未登录）；否则只对持有其中任一角色的用户生效
+        private List<String> roles = new ArrayList<>();
+        private int limit = 100;
+        private int periodSeconds = 60;
+        // 集群模式下每次租用的令牌数
+        private int leaseBatch = 10;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public List<String> getMethods() {
+            return methods;
+        }
+
+        public void setMethods(List<String> methods) {
+            this.methods = methods;
+        }
+
+        public List<String> getRoles() {
+            return roles;
+        }
+
+        public void setRoles(List<String> roles) {
+            this.roles = roles;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public void setLimit(int limit) {
+            this.limit = limit;
+        }
+
+        public int getPeriodSeconds() {
+            return periodSeconds;
+        }
+
+        public void setPeriodSeconds(int periodSeconds) {
+            this.periodSeconds = periodSeconds;
+        }
+
+        public int getLeaseBatch() {
+            return leaseBatch;
+        }
+
+        public void setLeaseBatch(int leaseBatch) {
+            this.leaseBatch = leaseBatch;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.config;
+
+import com.example.demo.service.InMemoryTokenLeaseStore;
+import com.example.demo.service.RedisTokenLeaseStore;
+import com.example.demo.service.TokenLeaseStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+
+// 集群限流的共享桶存储：rate-limit.store=redis时使用RedisConfig提供的RedisTemplate，
+// memory为进程内实现（走同样的租用逻辑），默认local不创建存储，各节点独立限流
+@Configuration
+public class RateLimitStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "rate-limit.store", havingValue = "redis")
+    public TokenLeaseStore redisTokenLeaseStore(RedisTemplate<String, Object> redisTemplate) {
+        return new RedisTokenLeaseStore(redisTemplate);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "rate-limit.store", havingValue = "memory")
+    public TokenLeaseStore inMemoryTokenLeaseStore() {
+        return new InMemoryTokenLeaseStore();
+    }
+}
@@ -1,13 +1,24 @@
 package com.example.demo.config;
 
+import com.example.demo.service.DistributedRateLimiter;
+import com.example.demo.service.TokenLeaseStore;
+import com.example.demo.util.ClientAddress;
+import com.example.demo.util.RateLimitBucket;
+import com.example.demo.util.RateLimiterTable;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.Refill;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -15,57 +26,114 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class RateLimitingConfig {
 
-    private final Map<String, BucketWrapper> buckets = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitingConfig.class);
 
-    public RateLimitingConfig() {
-        // Schedule cleanup task to run every 5 minutes
-        scheduler.scheduleAtFixedRate(this::cleanupExpiredBuckets, 5, 5, TimeUnit.MINUTES);
-    }
+    private static final int LOGIN_LIMIT = 5;
+    private static final int API_LIMIT = 100;
+    private static final Duration REFILL_PERIOD = Duration.ofMinutes(1);
 
-    // Wrapper class to hold Bucket and its last access time
-    private static class BucketWrapper {
-        Bucket bucket;
-        long lastAccessTime;
+    private static final ThreadLocal<long[]> KEY_SCRATCH = ThreadLocal.withInitial(() -> new long[2]);
 
-        public BucketWrapper(Bucket bucket) {
-            this.bucket = bucket;
-            this.lastAccessTime = System.currentTimeMillis();
-        }
+    // 每类限流各用一张表，互不挤占容量；所有表由同一个线程清理
+    private final List<RateLimiterTable> tables = new CopyOnWriteArrayList<>();
+    private final RateLimiterTable loginBuckets;
+    private final RateLimiterTable apiBuckets;
+    private final ScheduledExecutorService scheduler;
+    // 配置了共享桶存储时启用集群限流，否则为null，各节点独立限流
+    private final DistributedRateLimiter distributedRateLimiter;
+    private final int maxEntries;
+    private final int idleTtlSeconds;
+    private final long startNanos = System.nanoTime();
 
-        public void updateLastAccessTime() {
-            this.lastAccessTime = System.currentTimeMillis();
-        }
+    // 溢出告警按分钟汇总输出，仅由清理线程访问
+    private long overflow;
+    private int lastOverflowReport;
+
+    public RateLimitingConfig(@Value("${rate-limit.max-entries:100000}") int maxEntries,
+                              @Value("${rate-limit.idle-ttl-minutes:60}") int idleTtlMinutes,
+                              @Value("${rate-limit.lease.login-batch:1}") int loginLeaseBatch,
+                              @Value("${rate-limit.lease.api-batch:10}") int apiLeaseBatch,
+                              @Value("${rate-limit.lease.fallback-seconds:30}") int fallbackSeconds,
+                              ObjectProvider<TokenLeaseStore> tokenLeaseStore) {
+        TokenLeaseStore store = tokenLeaseStore.getIfAvailable();
+        this.distributedRateLimiter = store != null
+                ? new DistributedRateLimiter(store, Duration.ofSeconds(fallbackSeconds))
+                : null;
+        this.maxEntries = maxEntries;
+        this.idleTtlSeconds = (int) Duration.ofMinutes(idleTtlMinutes).getSeconds();
+
+        // 登录限流：每分钟最多5次尝试；API限流：每分钟最多100次请求
+        this.loginBuckets = createTable("login", LOGIN_LIMIT, REFILL_PERIOD, loginLeaseBatch);
+        this.apiBuckets = createTable("api", API_LIMIT, REFILL_PERIOD, apiLeaseBatch);
+
+        // 每秒推进一次时间轮，只处理到期的条目
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::expireIdleBuckets, 1, 1, TimeUnit.SECONDS);
     }
 
     // 登录限流：每分钟最多5次尝试
-    public Bucket getLoginBucket(String clientIp) {
-        BucketWrapper wrapper = buckets.computeIfAbsent(clientIp, k -> createLoginBucketWrapper());
-        wrapper.updateLastAccessTime(); // Update access time on retrieval
-        return wrapper.bucket;
+    public RateLimitBucket getLoginBucket(String clientIp) {
+        return loginBuckets.get(clientIp);
     }
 
-    private BucketWrapper createLoginBucketWrapper() {
-        Bandwidth limit = Bandwidth.classic(5, Refill.intervally(5, Duration.ofMinutes(1)));
-        return new BucketWrapper(Bucket.builder().addLimit(limit).build());
+    public RateLimitBucket getLoginBucket(HttpServletRequest request) {
+        long[] key = KEY_SCRATCH.get();
+        ClientAddress.parse(request, key);
+        return loginBuckets.get(key[0], key[1]);
     }
 
     // API限流：每分钟最多100次请求
-    public Bucket getApiBucket(String clientIp) {
-        BucketWrapper wrapper = buckets.computeIfAbsent("api_" + clientIp, k -> createApiBucketWrapper());
-        wrapper.updateLastAccessTime(); // Update access time on retrieval
-        return wrapper.bucket;
+    public RateLimitBucket getApiBucket(String clientIp) {
+        return apiBuckets.get(clientIp);
+    }
+
+    public RateLimitBucket getApiBucket(long high, long low) {
+        return apiBuckets.get(high, low);
+    }
+
+    // 创建一张限流表并纳入统一清理；name同时作为集群模式下共享桶的键前缀
+    public RateLimiterTable createTable(String name, int limit, Duration period, int leaseBatch) {
+        String prefix = name + ":";
+        RateLimiterTable table = new RateLimiterTable(
+                (high, low) -> createBucket(prefix, high, low, limit, period, leaseBatch), maxEntries, idleTtlSeconds);
+        tables.add(table);
+        return table;
     }
 
-    private BucketWrapper createApiBucketWrapper() {
-        Bandwidth limit = Bandwidth.classic(100, Refill.intervally(100, Duration.ofMinutes(1)));
-        return new BucketWrapper(Bucket.builder().addLimit(limit).build());
+    // 集群模式下返回共享桶的本地代理，本地桶作为共享存储不可用时的后备
+    private RateLimitBucket createBucket(String prefix, long high, long low, int limit, Duration period, int leaseBatch) {
+        Bandwidth bandwidth = Bandwidth.classic(limit, Refill.intervally(limit, period));
+        RateLimitBucket localBucket = RateLimitBucket.local(Bucket.builder().addLimit(bandwidth).build());
+        if (distributedRateLimiter == null) {
+            return localBucket;
+        }
+        String key = prefix + String.format("%016x%016x", high, low);
+        return distributedRateLimiter.bucket(key, limit, period, leaseBatch, localBucket);
+    }
+
+    // 清理空闲的bucket
+    private void expireIdleBuckets() {
+        try {
+            int now = (int) TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+            for (RateLimiterTable table : tables) {
+                overflow += table.expire(now);
+            }
+            if (overflow > 0 && now - lastOverflowReport >= 60) {
+                logger.warn("限流表已满，{}次请求按网段使用了溢出限流桶", overflow);
+                overflow = 0;
+                lastOverflowReport = now;
+            }
+        } catch (RuntimeException e) {
+            logger.error("清理限流桶失败", e);
+        }
     }
 
-    // 清理过期的bucket
-    public void cleanupExpiredBuckets() {
-        long cutoffTime = System.currentTimeMillis() - Duration.ofHours(1).toMillis(); // Remove buckets not accessed in the last 1 hour
-        buckets.entrySet().removeIf(entry -> entry.getValue().lastAccessTime < cutoffTime);
-        System.out.println("Cleaned up expired buckets. Current size: " + buckets.size());
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
     }
 }
@@ -0,0 +1,52 @@
+package com.example.demo.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+// Hibernate二级缓存：角色、权限实体和角色的权限集合，以及启用列表、按代码查找的查询缓存。
+// 缓存区域在这里按配置的容量和过期时间创建（Caffeine实现的JCache），未在此创建的区域启动时报错（missing_cache_strategy: fail）。
+// 区域命中率等统计信息由hibernate.generate_statistics开启，通过actuator的hibernate.*指标查看
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final String ROLES_REGION = "roles";
+    public static final String ROLE_PERMISSIONS_REGION = "roles.permissions";
+    public static final String PERMISSIONS_REGION = "permissions";
+
+    // Hibernate默认的查询结果区域和表更新时间戳区域
+    private static final String QUERY_RESULTS_REGION = "default-query-results-region";
+    private static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${hibernate-cache.max-size:10000}") long maxSize,
+                                              @Value("${hibernate-cache.ttl-seconds:600}") long ttlSeconds) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+        for (String region : List.of(ROLES_REGION, ROLE_PERMISSIONS_REGION, PERMISSIONS_REGION, QUERY_RESULTS_REGION)) {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(maxSize));
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+            cacheManager.createCache(region, configuration);
+        }
+        // 时间戳区域每张表只有一条，不能早于查询结果被淘汰，否则查询缓存可能读到过期结果
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
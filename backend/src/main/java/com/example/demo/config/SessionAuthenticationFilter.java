@@ -1,62 +1,124 @@
 package com.example.demo.config;
 
-import com.example.demo.entity.User;
+import com.example.demo.service.UserSecurityVersionService;
 import com.example.demo.service.UserService;
+import com.example.demo.service.UserSnapshot;
+import com.example.demo.util.SessionPrincipal;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 @Component
 public class SessionAuthenticationFilter extends OncePerRequestFilter {
-    
-    private UserService userService;
-    
-    public SessionAuthenticationFilter(@Lazy UserService userService) {
+
+    // 公开端点和Session登录端点不需要从会话恢复认证
+    private static final List<String> PUBLIC_PATHS = List.of(
+        "/api/auth/**",
+        "/api/v2/auth/login",
+        "/api/v2/auth/refresh",
+        "/api/home",
+        "/api/stats",
+        "/h2-console/**"
+    );
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final UserService userService;
+    private final UserSecurityVersionService userSecurityVersionService;
+
+    public SessionAuthenticationFilter(@Lazy UserService userService,
+                                       UserSecurityVersionService userSecurityVersionService) {
         this.userService = userService;
+        this.userSecurityVersionService = userSecurityVersionService;
     }
-    
+
+    // 携带Bearer令牌的请求由JWT过滤器处理；公开端点直接放行
     @Override
-    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String authorization = request.getHeader("Authorization");
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            return true;
+        }
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String pattern : PUBLIC_PATHS) {
+            if (PATH_MATCHER.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
-        
+
         HttpSession session = request.getSession(false);
-        
+
         if (session != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            String username = (String) session.getAttribute("username");
-            Long userId = (Long) session.getAttribute("userId");
-            
-            if (username != null && userId != null) {
-                Optional<User> userOpt = userService.findByUsername(username);
-                if (userOpt.isPresent()) {
-                    User user = userOpt.get();
-                    
+            SessionPrincipal principal = resolvePrincipal(session);
+            if (principal != null) {
+                // 只比较安全版本，不访问数据库；用户被禁用、删除或改角色后会话随即失效
+                if (userSecurityVersionService.isCurrent(principal.getUserId(), principal.getSecurityVersion())) {
+                    List<GrantedAuthority> authorities = new ArrayList<>(principal.getAuthorities().size());
+                    for (String authority : principal.getAuthorities()) {
+                        authorities.add(new SimpleGrantedAuthority(authority));
+                    }
+
                     // 创建认证对象
                     Authentication authentication = new UsernamePasswordAuthenticationToken(
-                        user.getUsername(),
+                        principal.getUsername(),
                         null,
-                        Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + user.getRole().name()))
+                        authorities
                     );
-                    
+
                     // 设置到Security上下文
                     SecurityContextHolder.getContext().setAuthentication(authentication);
+                } else {
+                    session.invalidate();
                 }
             }
         }
-        
+
         filterChain.doFilter(request, response);
     }
-} 
\ No newline at end of file
+
+    // 读取会话中的认证主体；旧会话只有用户名和ID时加载一次并补写主体
+    private SessionPrincipal resolvePrincipal(HttpSession session) {
+        Object attribute = session.getAttribute(SessionPrincipal.SESSION_ATTRIBUTE);
+        if (attribute instanceof SessionPrincipal) {
+            return (SessionPrincipal) attribute;
+        }
+
+        String username = (String) session.getAttribute("username");
+        Long userId = (Long) session.getAttribute("userId");
+        if (username == null || userId == null) {
+            return null;
+        }
+
+        Optional<UserSnapshot> userOpt = userService.findSnapshotByUsername(username);
+        if (userOpt.isEmpty()) {
+            return null;
+        }
+
+        SessionPrincipal principal = userService.buildSessionPrincipal(userOpt.get());
+        session.setAttribute(SessionPrincipal.SESSION_ATTRIBUTE, principal);
+        return principal;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.demo.config;
+
+import com.example.demo.service.InMemoryTokenRevocationStore;
+import com.example.demo.service.RedisTokenRevocationStore;
+import com.example.demo.service.TokenRevocationStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+// 令牌撤销存储：jwt.revocation.store=redis时使用RedisConfig提供的RedisTemplate，否则使用内存存储
+@Configuration
+public class TokenRevocationConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "jwt.revocation.store", havingValue = "redis")
+    public RedisMessageListenerContainer tokenRevocationListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "jwt.revocation.store", havingValue = "redis")
+    public TokenRevocationStore redisTokenRevocationStore(RedisTemplate<String, Object> redisTemplate,
+                                                          RedisMessageListenerContainer tokenRevocationListenerContainer) {
+        return new RedisTokenRevocationStore(redisTemplate, tokenRevocationListenerContainer);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(TokenRevocationStore.class)
+    public TokenRevocationStore inMemoryTokenRevocationStore() {
+        return new InMemoryTokenRevocationStore();
+    }
+}
@@ -11,10 +11,16 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private ApiRateLimitingInterceptor apiRateLimitingInterceptor;
 
+    @Autowired
+    private ConcurrencyLimitingInterceptor concurrencyLimitingInterceptor;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(apiRateLimitingInterceptor)
                 .addPathPatterns("/api/**") // Apply to all /api endpoints
                 .excludePathPatterns("/api/v2/auth/**"); // Exclude auth endpoints
+        // 在按IP/用户限流之后做并发控制，被限流的请求不占用并发名额；认证接口以最高优先级参与
+        registry.addInterceptor(concurrencyLimitingInterceptor)
+                .addPathPatterns("/api/**");
     }
 }
@@ -2,11 +2,14 @@ package com.example.demo.controller;
 
 import com.example.demo.dto.ApiResponse;
 import com.example.demo.dto.LoginRequest;
-import com.example.demo.entity.User;
+import com.example.demo.service.PasswordHashingBusyException;
 import com.example.demo.service.UserService;
+import com.example.demo.service.UserSnapshot;
+import com.example.demo.util.SessionPrincipal;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -14,7 +17,6 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -32,35 +34,44 @@ public class AuthController {
             @Valid @RequestBody LoginRequest loginRequest, 
             HttpSession session) {
         
-        if (userService.authenticate(loginRequest.getUsername(), loginRequest.getPassword())) {
-            Optional<User> userOpt = userService.findByUsername(loginRequest.getUsername());
-            if (userOpt.isPresent()) {
-                User user = userOpt.get();
-                
-                // 更新最后登录时间
-                userService.updateLastLogin(user.getUsername());
-                
-                session.setAttribute("userId", user.getId());
-                session.setAttribute("username", user.getUsername());
-                
-                // 设置Spring Security认证上下文
-                Authentication authentication = new UsernamePasswordAuthenticationToken(
-                    user.getUsername(), 
-                    null, 
-                    Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + user.getRole().name()))
-                );
-                SecurityContextHolder.getContext().setAuthentication(authentication);
-                
-                Map<String, Object> userData = new HashMap<>();
-                userData.put("id", user.getId());
-                userData.put("username", user.getUsername());
-                userData.put("email", user.getEmail());
-                userData.put("fullName", user.getFullName());
-                userData.put("role", user.getRole());
-                userData.put("status", user.getStatus());
-                
-                return ResponseEntity.ok(ApiResponse.success("登录成功", userData));
-            }
+        // 单次查询完成密码、状态校验和登录时间记录
+        UserService.LoginResult result;
+        try {
+            result = userService.login(loginRequest.getUsername(), loginRequest.getPassword());
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+        if (result.getStatus() == UserService.LoginResult.Status.DISABLED) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("账户已被禁用或待审核"));
+        }
+        if (result.isSuccess()) {
+            UserSnapshot user = result.getUser();
+            session.setAttribute("userId", user.getId());
+            session.setAttribute("username", user.getUsername());
+            
+            // 会话中保存认证主体，后续请求由过滤器按安全版本校验，无需重新加载用户
+            SessionPrincipal principal = userService.buildSessionPrincipal(user);
+            session.setAttribute(SessionPrincipal.SESSION_ATTRIBUTE, principal);
+            
+            // 设置Spring Security认证上下文
+            Authentication authentication = new UsernamePasswordAuthenticationToken(
+                principal.getUsername(), 
+                null, 
+                principal.getAuthorities().stream().map(SimpleGrantedAuthority::new).toList()
+            );
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+            
+            Map<String, Object> userData = new HashMap<>();
+            userData.put("id", user.getId());
+            userData.put("username", user.getUsername());
+            userData.put("email", user.getEmail());
+            userData.put("fullName", user.getFullName());
+            userData.put("role", user.getRole());
+            userData.put("status", user.getStatus());
+            
+            return ResponseEntity.ok(ApiResponse.success("登录成功", userData));
         }
         
         return ResponseEntity.badRequest().body(ApiResponse.error("用户名或密码错误"));
@@ -80,9 +91,9 @@ public class AuthController {
         String username = (String) session.getAttribute("username");
         
         if (userId != null && username != null) {
-            Optional<User> userOpt = userService.findByUsername(username);
+            Optional<UserSnapshot> userOpt = userService.findSnapshotByUsername(username);
             if (userOpt.isPresent()) {
-                User user = userOpt.get();
+                UserSnapshot user = userOpt.get();
                 Map<String, Object> userData = new HashMap<>();
                 userData.put("id", user.getId());
                 userData.put("username", user.getUsername());
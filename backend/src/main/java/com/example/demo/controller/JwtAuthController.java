@@ -1,15 +1,22 @@
 package com.example.demo.controller;
 
+import com.example.demo.config.JwtAuthenticationFilter;
 import com.example.demo.config.RateLimitingConfig;
 import com.example.demo.dto.ApiResponse;
 import com.example.demo.dto.LoginRequest;
-import com.example.demo.entity.User;
+import com.example.demo.service.PasswordHashingBusyException;
+import com.example.demo.service.TokenRevocationService;
+import com.example.demo.service.UserSecurityVersionService;
 import com.example.demo.service.UserService;
+import com.example.demo.service.UserSnapshot;
+import com.example.demo.util.JwtPrincipal;
 import com.example.demo.util.JwtUtil;
-import io.github.bucket4j.Bucket;
+import com.example.demo.util.JwtVerification;
+import com.example.demo.util.RateLimitBucket;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
@@ -35,13 +42,18 @@ public class JwtAuthController {
     @Autowired
     private RateLimitingConfig rateLimitingConfig;
     
+    @Autowired
+    private UserSecurityVersionService userSecurityVersionService;
+    
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+    
     @PostMapping("/login")
     public ResponseEntity<ApiResponse<Map<String, Object>>> login(
             @Valid @RequestBody LoginRequest loginRequest,
             HttpServletRequest request) {
         
-        String clientIp = getClientIpAddress(request);
-        Bucket bucket = rateLimitingConfig.getLoginBucket(clientIp);
+        RateLimitBucket bucket = rateLimitingConfig.getLoginBucket(request);
         
         // 检查限流
         if (!bucket.tryConsume(1)) {
@@ -50,47 +62,45 @@ public class JwtAuthController {
         }
         
         try {
-            // 验证用户凭据
-            if (userService.authenticate(loginRequest.getUsername(), loginRequest.getPassword())) {
-                Optional<User> userOpt = userService.findByUsername(loginRequest.getUsername());
-                if (userOpt.isPresent()) {
-                    User user = userOpt.get();
-                    
-                    // 检查用户状态
-                    if (user.getStatus() != User.UserStatus.ACTIVE) {
-                        return ResponseEntity.badRequest()
-                                .body(ApiResponse.error("账户已被禁用或待审核"));
-                    }
-                    
-                    // 更新最后登录时间
-                    userService.updateLastLogin(user.getUsername());
-                    
-                    // 生成JWT令牌
-                    UserDetails userDetails = userService.loadUserByUsername(user.getUsername());
-                    String accessToken = jwtUtil.generateToken(userDetails);
-                    String refreshToken = jwtUtil.generateRefreshToken(userDetails);
-                    
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("accessToken", accessToken);
-                    response.put("refreshToken", refreshToken);
-                    response.put("tokenType", "Bearer");
-                    response.put("expiresIn", jwtUtil.getAccessTokenExpirationInSeconds());
-                    response.put("user", Map.of(
-                            "id", user.getId(),
-                            "username", user.getUsername(),
-                            "email", user.getEmail(),
-                            "fullName", user.getFullName(),
-                            "role", user.getRole(),
-                            "status", user.getStatus()
-                    ));
-                    
-                    return ResponseEntity.ok(ApiResponse.success("登录成功", response));
-                }
+            // 验证用户凭据（单次查询完成密码、状态校验和登录时间记录）
+            UserService.LoginResult result = userService.login(loginRequest.getUsername(), loginRequest.getPassword());
+            if (result.getStatus() == UserService.LoginResult.Status.DISABLED) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("账户已被禁用或待审核"));
+            }
+            if (!result.isSuccess()) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("用户名或密码错误"));
             }
             
-            return ResponseEntity.badRequest()
-                    .body(ApiResponse.error("用户名或密码错误"));
+            UserSnapshot user = result.getUser();
+            
+            // 生成自包含JWT令牌，权限和安全版本取自同一快照
+            UserDetails userDetails = result.getUserDetails();
+            long securityVersion = user.getSecurityVersion();
+            String accessToken = jwtUtil.generateToken(userDetails, user.getId(), securityVersion);
+            String refreshToken = jwtUtil.generateRefreshToken(userDetails, user.getId(), securityVersion);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("accessToken", accessToken);
+            response.put("refreshToken", refreshToken);
+            response.put("tokenType", "Bearer");
+            response.put("expiresIn", jwtUtil.getAccessTokenExpirationInSeconds());
+            response.put("user", Map.of(
+                    "id", user.getId(),
+                    "username", user.getUsername(),
+                    "email", user.getEmail(),
+                    "fullName", user.getFullName(),
+                    "role", user.getRole(),
+                    "status", user.getStatus()
+            ));
+            
+            return ResponseEntity.ok(ApiResponse.success("登录成功", response));
                     
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500)
                     .body(ApiResponse.error("登录过程中发生错误"));
@@ -108,21 +118,27 @@ public class JwtAuthController {
         }
         
         try {
-            // 验证刷新令牌
-            if (jwtUtil.validateTokenFormat(refreshToken) && jwtUtil.isRefreshToken(refreshToken)) {
-                String username = jwtUtil.getUsernameFromToken(refreshToken);
-                UserDetails userDetails = userService.loadUserByUsername(username);
-                
-                if (jwtUtil.validateToken(refreshToken, userDetails)) {
-                    String newAccessToken = jwtUtil.generateToken(userDetails);
-                    
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("accessToken", newAccessToken);
-                    response.put("tokenType", "Bearer");
-                    response.put("expiresIn", jwtUtil.getAccessTokenExpirationInSeconds());
-                    
-                    return ResponseEntity.ok(ApiResponse.success("令牌刷新成功", response));
+            // 验证刷新令牌（只解析一次）
+            JwtVerification verification = jwtUtil.verify(refreshToken);
+            if (verification.isValid() && verification.getPrincipal().isRefreshToken()
+                    && !tokenRevocationService.isRevoked(verification.getPrincipal())) {
+                JwtPrincipal principal = verification.getPrincipal();
+                Optional<UserSnapshot> userOpt = userService.findSnapshotByUsername(principal.getSubject());
+                if (userOpt.isEmpty() || !isRefreshTokenCurrent(principal, userOpt.get())) {
+                    return ResponseEntity.status(401)
+                            .body(ApiResponse.error("无效的刷新令牌"));
                 }
+                
+                UserSnapshot user = userOpt.get();
+                UserDetails userDetails = userService.buildUserDetails(user);
+                String newAccessToken = jwtUtil.generateToken(userDetails, user.getId(), user.getSecurityVersion());
+                
+                Map<String, Object> response = new HashMap<>();
+                response.put("accessToken", newAccessToken);
+                response.put("tokenType", "Bearer");
+                response.put("expiresIn", jwtUtil.getAccessTokenExpirationInSeconds());
+                
+                return ResponseEntity.ok(ApiResponse.success("令牌刷新成功", response));
             }
             
             return ResponseEntity.status(401)
@@ -135,9 +151,24 @@ public class JwtAuthController {
     }
     
     @PostMapping("/logout")
-    public ResponseEntity<ApiResponse<Void>> logout() {
-        // JWT是无状态的，客户端删除令牌即可
-        // 在生产环境中，可以将令牌加入黑名单
+    public ResponseEntity<ApiResponse<Void>> logout(
+            HttpServletRequest request,
+            @RequestBody(required = false) Map<String, String> body) {
+        // 将访问令牌加入撤销列表，直到其过期
+        JwtPrincipal principal = resolvePrincipal(request);
+        if (principal != null) {
+            tokenRevocationService.revoke(principal);
+            
+            // 同时撤销同一用户提交的刷新令牌
+            String refreshToken = body != null ? body.get("refreshToken") : null;
+            if (refreshToken != null && !refreshToken.isEmpty()) {
+                JwtVerification verification = jwtUtil.verify(refreshToken);
+                if (verification.isValid() && verification.getPrincipal().isRefreshToken()
+                        && verification.getPrincipal().getSubject().equals(principal.getSubject())) {
+                    tokenRevocationService.revoke(verification.getPrincipal());
+                }
+            }
+        }
         return ResponseEntity.ok(ApiResponse.success("退出登录成功"));
     }
     
@@ -146,13 +177,12 @@ public class JwtAuthController {
             HttpServletRequest request) {
         
         try {
-            String token = extractTokenFromRequest(request);
-            if (token != null && jwtUtil.validateTokenFormat(token)) {
-                String username = jwtUtil.getUsernameFromToken(token);
-                Optional<User> userOpt = userService.findByUsername(username);
+            JwtPrincipal principal = resolvePrincipal(request);
+            if (principal != null) {
+                Optional<UserSnapshot> userOpt = userService.findSnapshotByUsername(principal.getSubject());
                 
                 if (userOpt.isPresent()) {
-                    User user = userOpt.get();
+                    UserSnapshot user = userOpt.get();
                     Map<String, Object> userData = new HashMap<>();
                     userData.put("id", user.getId());
                     userData.put("username", user.getUsername());
@@ -174,19 +204,28 @@ public class JwtAuthController {
         }
     }
     
-    // 获取客户端IP地址
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
+    // 刷新令牌必须属于同一用户且未被撤销性变更作废
+    private boolean isRefreshTokenCurrent(JwtPrincipal principal, UserSnapshot user) {
+        if (principal.getUserId() == null || principal.getSecurityVersion() == null) {
+            // 旧版刷新令牌不含版本信息，保持原有行为
+            return true;
         }
-        
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
+        return principal.getUserId().equals(user.getId())
+                && userSecurityVersionService.isCurrent(user.getId(), principal.getSecurityVersion());
+    }
+    
+    // 优先复用过滤器已验证的principal，否则自行验证一次
+    private JwtPrincipal resolvePrincipal(HttpServletRequest request) {
+        Object attribute = request.getAttribute(JwtAuthenticationFilter.VERIFIED_PRINCIPAL_ATTRIBUTE);
+        if (attribute instanceof JwtPrincipal) {
+            return (JwtPrincipal) attribute;
         }
-        
-        return request.getRemoteAddr();
+        String token = extractTokenFromRequest(request);
+        if (token == null) {
+            return null;
+        }
+        JwtVerification verification = jwtUtil.verify(token);
+        return verification.isValid() ? verification.getPrincipal() : null;
     }
     
     // 从请求中提取JWT令牌
@@ -1,14 +1,22 @@
 package com.example.demo.controller;
 
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.CountedPage;
 import com.example.demo.entity.Permission;
+import com.example.demo.service.EffectivePermissionService;
+import com.example.demo.service.ListCountService;
+import com.example.demo.service.PermissionCatalogService;
 import com.example.demo.service.PermissionService;
+import com.example.demo.util.KeysetCursorCodec;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
@@ -16,7 +24,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
+// 权限和角色管理接口对ADMIN角色始终开放，不依赖权限位集：停用权限或ADMIN角色、撤销其分配后，管理员仍能通过接口恢复
 @RestController
 @RequestMapping("/api/permissions")
 @CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"}, allowCredentials = "true")
@@ -25,8 +35,21 @@ public class PermissionController {
     @Autowired
     private PermissionService permissionService;
     
+    @Autowired
+    private KeysetCursorCodec keysetCursorCodec;
+    
+    @Autowired
+    private EffectivePermissionService effectivePermissionService;
+    
+    @Autowired
+    private PermissionCatalogService permissionCatalogService;
+    
+    // 列表允许的排序字段，只包含建有索引的列（见db/migration）
+    private static final Set<String> SORTABLE_FIELDS = Set.of("id", "name", "code", "module", "sortOrder", "createdAt");
+    
     // 获取权限列表（分页）
     @GetMapping
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('permission:view')")
     public ResponseEntity<ApiResponse<Map<String, Object>>> getPermissions(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
@@ -35,29 +58,45 @@ public class PermissionController {
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String status,
             @RequestParam(required = false) String module,
-            @RequestParam(required = false) String type) {
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(defaultValue = "exact") String count,
+            @RequestParam(required = false) String fields) {
         
         try {
+            if (!SORTABLE_FIELDS.contains(sortBy)) {
+                throw new RuntimeException("不支持按该字段排序: " + sortBy);
+            }
             Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+            // count=estimated时允许使用数据库统计信息估算总数，响应中的totalExact标明总数是否精确
+            ListCountService.Mode countMode = ListCountService.Mode.parse(count);
             
-            Pageable pageable = PageRequest.of(page, size, sort);
-            Page<Permission> permissionPage;
-            
-            // 根据不同的查询条件调用不同的服务方法
-            if ((search != null && !search.trim().isEmpty()) || 
-                (status != null && !status.trim().isEmpty()) ||
-                (module != null && !module.trim().isEmpty()) ||
-                (type != null && !type.trim().isEmpty())) {
-                permissionPage = permissionService.searchPermissionsWithFilters(search, status, module, type, pageable);
-            } else {
-                permissionPage = permissionService.getAllPermissions(pageable);
+            // 传入after时使用游标分页（第一页传空值），不执行OFFSET扫描，总数仅在withTotal=true时统计
+            if (after != null) {
+                Window<Map<String, Object>> window = permissionService.scrollPermissions(search, status, module, type, fields, sort, after, size);
+                Map<String, Object> response = new HashMap<>();
+                response.put("permissions", window.getContent());
+                response.put("hasNext", window.hasNext());
+                response.put("nextCursor", keysetCursorCodec.nextCursor(window, sort));
+                if (withTotal) {
+                    ListCountService.Result total = permissionService.countPermissionsWithFilters(search, status, module, type, countMode);
+                    response.put("totalItems", total.getTotal());
+                    response.put("totalExact", total.isExact());
+                }
+                return ResponseEntity.ok(ApiResponse.success("获取权限列表成功", response));
             }
             
+            Pageable pageable = PageRequest.of(page, size, sort);
+            // 列表只返回fields指定的字段（默认为摘要字段），不加载实体
+            CountedPage<Map<String, Object>> permissionPage = permissionService.listPermissions(search, status, module, type, fields, pageable, countMode);
+            
             Map<String, Object> response = new HashMap<>();
             response.put("permissions", permissionPage.getContent());
             response.put("currentPage", permissionPage.getNumber());
             response.put("totalItems", permissionPage.getTotalElements());
+            response.put("totalExact", permissionPage.isTotalExact());
             response.put("totalPages", permissionPage.getTotalPages());
             response.put("hasNext", permissionPage.hasNext());
             response.put("hasPrevious", permissionPage.hasPrevious());
@@ -70,6 +109,7 @@ public class PermissionController {
     
     // 根据ID获取权限
     @GetMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('permission:view')")
     public ResponseEntity<ApiResponse<Permission>> getPermissionById(@PathVariable Long id) {
         try {
             Optional<Permission> permissionOpt = permissionService.findById(id);
@@ -83,8 +123,30 @@ public class PermissionController {
         }
     }
     
+    // 获取拥有该权限的用户（通过所属角色获得），按用户ID游标分页，afterId为上一页返回的nextAfterId
+    @GetMapping("/{id}/users")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('permission:view')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getPermissionUsers(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            if (permissionService.findById(id).isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (size < 1 || size > 100) {
+                throw new RuntimeException("每页数量应在1到100之间");
+            }
+            Map<String, Object> response = effectivePermissionService.findUsersWithPermission(id, afterId, size);
+            return ResponseEntity.ok(ApiResponse.success("获取权限用户成功", response));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("获取权限用户失败: " + e.getMessage()));
+        }
+    }
+    
     // 创建权限
     @PostMapping
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('permission:create')")
     public ResponseEntity<ApiResponse<Permission>> createPermission(@Valid @RequestBody Permission permission) {
         try {
             Permission createdPermission = permissionService.createPermission(permission);
@@ -96,6 +158,7 @@ public class PermissionController {
     
     // 更新权限
     @PutMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('permission:edit')")
     public ResponseEntity<ApiResponse<Permission>> updatePermission(@PathVariable Long id, @Valid @RequestBody Permission permission) {
         try {
             permission.setId(id);
@@ -108,6 +171,7 @@ public class PermissionController {
     
     // 删除权限
     @DeleteMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('permission:delete')")
     public ResponseEntity<ApiResponse<Void>> deletePermission(@PathVariable Long id) {
         try {
             permissionService.deletePermission(id);
@@ -119,6 +183,7 @@ public class PermissionController {
     
     // 批量删除权限
     @DeleteMapping("/batch")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('permission:delete')")
     public ResponseEntity<ApiResponse<Void>> deletePermissions(@RequestBody List<Long> ids) {
         try {
             permissionService.deletePermissions(ids);
@@ -130,6 +195,7 @@ public class PermissionController {
     
     // 更新权限状态
     @PatchMapping("/{id}/status")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('permission:edit')")
     public ResponseEntity<ApiResponse<Permission>> updatePermissionStatus(
             @PathVariable Long id, 
             @RequestBody Map<String, String> statusMap) {
@@ -143,36 +209,40 @@ public class PermissionController {
         }
     }
     
-    // 获取所有启用的权限
+    // 获取所有启用的权限（响应体按权限版本缓存，带ETag，未变化时返回304）
     @GetMapping("/active")
-    public ResponseEntity<ApiResponse<List<Permission>>> getActivePermissions() {
-        try {
-            List<Permission> activePermissions = permissionService.getActivePermissions();
-            return ResponseEntity.ok(ApiResponse.success("获取启用权限成功", activePermissions));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(ApiResponse.error("获取启用权限失败: " + e.getMessage()));
-        }
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('permission:view')")
+    public ResponseEntity<byte[]> getActivePermissions() {
+        return cached(permissionCatalogService.activePermissions());
     }
     
     // 按模块获取启用的权限
     @GetMapping("/active/module/{module}")
-    public ResponseEntity<ApiResponse<List<Permission>>> getActivePermissionsByModule(@PathVariable String module) {
-        try {
-            List<Permission> permissions = permissionService.getActivePermissionsByModule(module);
-            return ResponseEntity.ok(ApiResponse.success("获取模块权限成功", permissions));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(ApiResponse.error("获取模块权限失败: " + e.getMessage()));
-        }
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('permission:view')")
+    public ResponseEntity<byte[]> getActivePermissionsByModule(@PathVariable String module) {
+        return cached(permissionCatalogService.modulePermissions(module));
     }
     
     // 获取所有模块名称
     @GetMapping("/modules")
-    public ResponseEntity<ApiResponse<List<String>>> getAllModules() {
-        try {
-            List<String> modules = permissionService.getAllModules();
-            return ResponseEntity.ok(ApiResponse.success("获取模块列表成功", modules));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(ApiResponse.error("获取模块列表失败: " + e.getMessage()));
-        }
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('permission:view')")
+    public ResponseEntity<byte[]> getAllModules() {
+        return cached(permissionCatalogService.modules());
+    }
+    
+    // 获取权限树：按模块分组，组内按排序字段排序
+    @GetMapping("/tree")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('permission:view')")
+    public ResponseEntity<byte[]> getPermissionTree() {
+        return cached(permissionCatalogService.tree());
+    }
+    
+    // If-None-Match与ETag一致时由Spring MVC返回304，不写出响应体；no-cache要求客户端每次带ETag重新验证
+    private ResponseEntity<byte[]> cached(PermissionCatalogService.Resource resource) {
+        return ResponseEntity.ok()
+                .eTag(resource.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(resource.getBody());
     }
 } 
\ No newline at end of file
@@ -1,14 +1,21 @@
 package com.example.demo.controller;
 
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.CountedPage;
+import com.example.demo.dto.PermissionIdsRequest;
+import com.example.demo.dto.RolePermissionChangeRequest;
 import com.example.demo.entity.Role;
+import com.example.demo.service.ListCountService;
+import com.example.demo.service.RolePermissionChangeService;
 import com.example.demo.service.RoleService;
+import com.example.demo.util.KeysetCursorCodec;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
@@ -18,6 +25,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
+// 权限和角色管理接口对ADMIN角色始终开放，不依赖权限位集：停用权限或ADMIN角色、撤销其分配后，管理员仍能通过接口恢复
 @RestController
 @RequestMapping("/api/roles")
 @CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"}, allowCredentials = "true")
@@ -26,35 +34,60 @@ public class RoleController {
     @Autowired
     private RoleService roleService;
     
+    @Autowired
+    private KeysetCursorCodec keysetCursorCodec;
+    
+    // 列表允许的排序字段，只包含建有索引的列（见db/migration）
+    private static final Set<String> SORTABLE_FIELDS = Set.of("id", "name", "code", "sortOrder", "createdAt");
+    
     // 获取角色列表（分页）
     @GetMapping
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:view')")
     public ResponseEntity<ApiResponse<Map<String, Object>>> getRoles(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir,
             @RequestParam(required = false) String search,
-            @RequestParam(required = false) String status) {
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(defaultValue = "exact") String count,
+            @RequestParam(required = false) String fields) {
         
         try {
+            if (!SORTABLE_FIELDS.contains(sortBy)) {
+                throw new RuntimeException("不支持按该字段排序: " + sortBy);
+            }
             Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+            // count=estimated时允许使用数据库统计信息估算总数，响应中的totalExact标明总数是否精确
+            ListCountService.Mode countMode = ListCountService.Mode.parse(count);
             
-            Pageable pageable = PageRequest.of(page, size, sort);
-            Page<Role> rolePage;
-            
-            // 根据不同的查询条件调用不同的服务方法
-            if ((search != null && !search.trim().isEmpty()) || 
-                (status != null && !status.trim().isEmpty())) {
-                rolePage = roleService.searchRolesWithFilters(search, status, pageable);
-            } else {
-                rolePage = roleService.getAllRoles(pageable);
+            // 传入after时使用游标分页（第一页传空值），不执行OFFSET扫描，总数仅在withTotal=true时统计
+            if (after != null) {
+                Window<Map<String, Object>> window = roleService.scrollRoles(search, status, fields, sort, after, size);
+                Map<String, Object> response = new HashMap<>();
+                response.put("roles", window.getContent());
+                response.put("hasNext", window.hasNext());
+                response.put("nextCursor", keysetCursorCodec.nextCursor(window, sort));
+                if (withTotal) {
+                    ListCountService.Result total = roleService.countRolesWithFilters(search, status, countMode);
+                    response.put("totalItems", total.getTotal());
+                    response.put("totalExact", total.isExact());
+                }
+                return ResponseEntity.ok(ApiResponse.success("获取角色列表成功", response));
             }
             
+            Pageable pageable = PageRequest.of(page, size, sort);
+            // 列表只返回fields指定的字段（默认为摘要字段），不加载实体
+            CountedPage<Map<String, Object>> rolePage = roleService.listRoles(search, status, fields, pageable, countMode);
+            
             Map<String, Object> response = new HashMap<>();
             response.put("roles", rolePage.getContent());
             response.put("currentPage", rolePage.getNumber());
             response.put("totalItems", rolePage.getTotalElements());
+            response.put("totalExact", rolePage.isTotalExact());
             response.put("totalPages", rolePage.getTotalPages());
             response.put("hasNext", rolePage.hasNext());
             response.put("hasPrevious", rolePage.hasPrevious());
@@ -67,6 +100,7 @@ public class RoleController {
     
     // 根据ID获取角色
     @GetMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:view')")
     public ResponseEntity<ApiResponse<Role>> getRoleById(@PathVariable Long id) {
         try {
             Optional<Role> roleOpt = roleService.findById(id);
@@ -82,6 +116,7 @@ public class RoleController {
     
     // 根据ID获取角色（包含权限）
     @GetMapping("/{id}/permissions")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:view')")
     public ResponseEntity<ApiResponse<Role>> getRoleWithPermissions(@PathVariable Long id) {
         try {
             Optional<Role> roleOpt = roleService.findByIdWithPermissions(id);
@@ -97,6 +132,7 @@ public class RoleController {
     
     // 创建角色
     @PostMapping
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:create')")
     public ResponseEntity<ApiResponse<Role>> createRole(@Valid @RequestBody Role role) {
         try {
             Role createdRole = roleService.createRole(role);
@@ -108,6 +144,7 @@ public class RoleController {
     
     // 更新角色
     @PutMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:edit')")
     public ResponseEntity<ApiResponse<Role>> updateRole(@PathVariable Long id, @Valid @RequestBody Role role) {
         try {
             role.setId(id);
@@ -120,6 +157,7 @@ public class RoleController {
     
     // 删除角色
     @DeleteMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:delete')")
     public ResponseEntity<ApiResponse<Void>> deleteRole(@PathVariable Long id) {
         try {
             roleService.deleteRole(id);
@@ -131,6 +169,7 @@ public class RoleController {
     
     // 批量删除角色
     @DeleteMapping("/batch")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:delete')")
     public ResponseEntity<ApiResponse<Void>> deleteRoles(@RequestBody List<Long> ids) {
         try {
             roleService.deleteRoles(ids);
@@ -142,6 +181,7 @@ public class RoleController {
     
     // 更新角色状态
     @PatchMapping("/{id}/status")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:edit')")
     public ResponseEntity<ApiResponse<Role>> updateRoleStatus(
             @PathVariable Long id, 
             @RequestBody Map<String, String> statusMap) {
@@ -157,6 +197,7 @@ public class RoleController {
     
     // 获取所有启用的角色
     @GetMapping("/active")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:view')")
     public ResponseEntity<ApiResponse<List<Role>>> getActiveRoles() {
         try {
             List<Role> activeRoles = roleService.getActiveRoles();
@@ -168,11 +209,12 @@ public class RoleController {
     
     // 为角色分配权限
     @PutMapping("/{id}/permissions")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:assign')")
     public ResponseEntity<ApiResponse<Role>> assignPermissions(
             @PathVariable Long id, 
-            @RequestBody Map<String, Set<Long>> permissionMap) {
+            @RequestBody PermissionIdsRequest request) {
         try {
-            Set<Long> permissionIds = permissionMap.get("permissionIds");
+            Set<Long> permissionIds = request.getPermissionIds();
             Role updatedRole = roleService.assignPermissions(id, permissionIds);
             return ResponseEntity.ok(ApiResponse.success("角色权限分配成功", updatedRole));
         } catch (Exception e) {
@@ -182,11 +224,12 @@ public class RoleController {
     
     // 为角色添加权限
     @PostMapping("/{id}/permissions")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:assign')")
     public ResponseEntity<ApiResponse<Role>> addPermissions(
             @PathVariable Long id, 
-            @RequestBody Map<String, Set<Long>> permissionMap) {
+            @RequestBody PermissionIdsRequest request) {
         try {
-            Set<Long> permissionIds = permissionMap.get("permissionIds");
+            Set<Long> permissionIds = request.getPermissionIds();
             Role updatedRole = roleService.addPermissions(id, permissionIds);
             return ResponseEntity.ok(ApiResponse.success("角色权限添加成功", updatedRole));
         } catch (Exception e) {
@@ -196,11 +239,12 @@ public class RoleController {
     
     // 为角色移除权限
     @DeleteMapping("/{id}/permissions")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:assign')")
     public ResponseEntity<ApiResponse<Role>> removePermissions(
             @PathVariable Long id, 
-            @RequestBody Map<String, Set<Long>> permissionMap) {
+            @RequestBody PermissionIdsRequest request) {
         try {
-            Set<Long> permissionIds = permissionMap.get("permissionIds");
+            Set<Long> permissionIds = request.getPermissionIds();
             Role updatedRole = roleService.removePermissions(id, permissionIds);
             return ResponseEntity.ok(ApiResponse.success("角色权限移除成功", updatedRole));
         } catch (Exception e) {
@@ -208,12 +252,30 @@ public class RoleController {
         }
     }
     
-    // 获取所有角色及其权限
+    // 批量修改角色权限（角色×权限矩阵的一次编辑）：每个角色给出完整的权限ID集合，只写入差异，返回新的权限版本号
+    @PatchMapping("/permissions")
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:assign')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> changePermissions(
+            @Valid @RequestBody RolePermissionChangeRequest request) {
+        try {
+            RolePermissionChangeService.Result result = roleService.changePermissions(request.getRoles());
+            Map<String, Object> response = new HashMap<>();
+            response.put("version", result.getVersion());
+            response.put("granted", result.getGranted());
+            response.put("revoked", result.getRevoked());
+            return ResponseEntity.ok(ApiResponse.success("角色权限修改成功", response));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("角色权限修改失败: " + e.getMessage()));
+        }
+    }
+    
+    // 获取所有角色及其权限：roles中每个角色带permissionIds，permissions中每个权限只出现一次
     @GetMapping("/with-permissions")
-    public ResponseEntity<ApiResponse<List<Role>>> getAllRolesWithPermissions() {
+    @PreAuthorize("hasRole('ADMIN') or @rbac.hasPermission('role:view')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getAllRolesWithPermissions() {
         try {
-            List<Role> rolesWithPermissions = roleService.getAllRolesWithPermissions();
-            return ResponseEntity.ok(ApiResponse.success("获取角色权限列表成功", rolesWithPermissions));
+            Map<String, Object> matrix = roleService.getRolePermissionMatrix();
+            return ResponseEntity.ok(ApiResponse.success("获取角色权限列表成功", matrix));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error("获取角色权限列表失败: " + e.getMessage()));
         }
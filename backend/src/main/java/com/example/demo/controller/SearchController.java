@@ -0,0 +1,57 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.service.RolePermissionEvaluator;
+import com.example.demo.service.SearchIndexService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/search")
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"}, allowCredentials = "true")
+public class SearchController {
+    
+    @Autowired
+    private SearchIndexService searchIndexService;
+    
+    @Autowired
+    private RolePermissionEvaluator rolePermissionEvaluator;
+    
+    private static final int MAX_LIMIT = 50;
+    
+    private static final Map<SearchIndexService.Type, String> VIEW_PERMISSIONS = Map.of(
+        SearchIndexService.Type.USERS, "user:view",
+        SearchIndexService.Type.ROLES, "role:view",
+        SearchIndexService.Type.PERMISSIONS, "permission:view");
+    
+    // 全局联想搜索（用户、角色、权限），查询内存索引，不访问数据库；types为逗号分隔的类型，默认全部
+    @GetMapping
+    public ResponseEntity<ApiResponse<Map<String, Object>>> search(
+            @RequestParam String q,
+            @RequestParam(required = false) String types,
+            @RequestParam(defaultValue = "10") int limit,
+            Authentication authentication) {
+        
+        try {
+            Set<SearchIndexService.Type> requested = SearchIndexService.Type.parse(types);
+            // 只搜索有查看权限的类型
+            requested.removeIf(type -> !rolePermissionEvaluator.hasPermission(authentication, VIEW_PERMISSIONS.get(type)));
+            
+            List<Map<String, Object>> items = searchIndexService.search(q, requested, Math.max(1, Math.min(limit, MAX_LIMIT)));
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("items", items);
+            response.put("query", q);
+            return ResponseEntity.ok(ApiResponse.success("搜索成功", response));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("搜索失败: " + e.getMessage()));
+        }
+    }
+}
@@ -1,18 +1,25 @@
 package com.example.demo.controller;
 
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.CountedPage;
+import com.example.demo.entity.Permission;
 import com.example.demo.entity.User;
+import com.example.demo.service.EffectivePermissionService;
+import com.example.demo.service.PasswordHashingBusyException;
+import com.example.demo.service.ListCountService;
 import com.example.demo.service.UserService;
 import com.example.demo.util.ExcelUtil;
+import com.example.demo.util.KeysetCursorCodec;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -25,6 +32,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/users")
@@ -34,8 +42,18 @@ public class UserController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private KeysetCursorCodec keysetCursorCodec;
+    
+    @Autowired
+    private EffectivePermissionService effectivePermissionService;
+    
+    // 列表允许的排序字段，只包含建有索引的列（见db/migration）
+    private static final Set<String> SORTABLE_FIELDS = Set.of("id", "username", "email", "fullName", "createdAt");
+    
     // 获取用户列表（分页）
     @GetMapping
+    @PreAuthorize("@rbac.hasPermission('user:view')")
     public ResponseEntity<ApiResponse<Map<String, Object>>> getUsers(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
@@ -43,28 +61,45 @@ public class UserController {
             @RequestParam(defaultValue = "desc") String sortDir,
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String status,
-            @RequestParam(required = false) String role) {
+            @RequestParam(required = false) String role,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(defaultValue = "exact") String count,
+            @RequestParam(required = false) String fields) {
         
         try {
+            if (!SORTABLE_FIELDS.contains(sortBy)) {
+                throw new RuntimeException("不支持按该字段排序: " + sortBy);
+            }
             Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+            // count=estimated时允许使用数据库统计信息估算总数，响应中的totalExact标明总数是否精确
+            ListCountService.Mode countMode = ListCountService.Mode.parse(count);
             
-            Pageable pageable = PageRequest.of(page, size, sort);
-            Page<User> userPage;
-            
-            // 根据不同的查询条件调用不同的服务方法
-            if ((search != null && !search.trim().isEmpty()) || 
-                (status != null && !status.trim().isEmpty()) || 
-                (role != null && !role.trim().isEmpty())) {
-                userPage = userService.searchUsersWithFilters(search, status, role, pageable);
-            } else {
-                userPage = userService.getAllUsers(pageable);
+            // 传入after时使用游标分页（第一页传空值），不执行OFFSET扫描，总数仅在withTotal=true时统计
+            if (after != null) {
+                Window<Map<String, Object>> window = userService.scrollUsers(search, status, role, fields, sort, after, size);
+                Map<String, Object> response = new HashMap<>();
+                response.put("users", window.getContent());
+                response.put("hasNext", window.hasNext());
+                response.put("nextCursor", keysetCursorCodec.nextCursor(window, sort));
+                if (withTotal) {
+                    ListCountService.Result total = userService.countUsersWithFilters(search, status, role, countMode);
+                    response.put("totalItems", total.getTotal());
+                    response.put("totalExact", total.isExact());
+                }
+                return ResponseEntity.ok(ApiResponse.success("获取用户列表成功", response));
             }
             
+            Pageable pageable = PageRequest.of(page, size, sort);
+            // 列表只返回fields指定的字段（默认为摘要字段），不加载实体
+            CountedPage<Map<String, Object>> userPage = userService.listUsers(search, status, role, fields, pageable, countMode);
+            
             Map<String, Object> response = new HashMap<>();
             response.put("users", userPage.getContent());
             response.put("currentPage", userPage.getNumber());
             response.put("totalItems", userPage.getTotalElements());
+            response.put("totalExact", userPage.isTotalExact());
             response.put("totalPages", userPage.getTotalPages());
             response.put("hasNext", userPage.hasNext());
             response.put("hasPrevious", userPage.hasPrevious());
@@ -77,6 +112,7 @@ public class UserController {
     
     // 根据ID获取用户
     @GetMapping("/{id}")
+    @PreAuthorize("@rbac.hasPermission('user:view')")
     public ResponseEntity<ApiResponse<User>> getUserById(@PathVariable Long id) {
         try {
             Optional<User> user = userService.findById(id);
@@ -90,12 +126,32 @@ public class UserController {
         }
     }
     
+    // 获取用户的有效权限（通过所属角色获得的启用权限）
+    @GetMapping("/{id}/permissions")
+    @PreAuthorize("@rbac.hasPermission('user:view')")
+    public ResponseEntity<ApiResponse<List<Permission>>> getUserPermissions(@PathVariable Long id) {
+        try {
+            if (userService.findById(id).isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            List<Permission> permissions = effectivePermissionService.findPermissionsOfUser(id);
+            return ResponseEntity.ok(ApiResponse.success("获取用户权限成功", permissions));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("获取用户权限失败: " + e.getMessage()));
+        }
+    }
+    
     // 创建新用户
     @PostMapping
+    @PreAuthorize("@rbac.hasPermission('user:create')")
     public ResponseEntity<ApiResponse<User>> createUser(@Valid @RequestBody User user) {
         try {
             User savedUser = userService.createUser(user);
             return ResponseEntity.ok(ApiResponse.success("创建用户成功", savedUser));
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error("创建用户失败: " + e.getMessage()));
         }
@@ -103,6 +159,7 @@ public class UserController {
     
     // 更新用户
     @PutMapping("/{id}")
+    @PreAuthorize("@rbac.hasPermission('user:edit')")
     public ResponseEntity<ApiResponse<User>> updateUser(@PathVariable Long id, @Valid @RequestBody User user) {
         try {
             user.setId(id);
@@ -115,6 +172,7 @@ public class UserController {
     
     // 删除用户
     @DeleteMapping("/{id}")
+    @PreAuthorize("@rbac.hasPermission('user:delete')")
     public ResponseEntity<ApiResponse<Void>> deleteUser(@PathVariable Long id) {
         try {
             userService.deleteUser(id);
@@ -126,10 +184,13 @@ public class UserController {
     
     // 批量删除用户
     @DeleteMapping("/batch")
+    @PreAuthorize("@rbac.hasPermission('user:delete')")
     public ResponseEntity<ApiResponse<Void>> deleteUsers(@RequestBody Map<String, Object> request) {
         try {
+            // JSON数字按大小反序列化为Integer或Long，统一转换为Long
             @SuppressWarnings("unchecked")
-            java.util.List<Long> ids = (java.util.List<Long>) request.get("ids");
+            List<Object> rawIds = (List<Object>) request.get("ids");
+            List<Long> ids = rawIds.stream().map(id -> ((Number) id).longValue()).toList();
             userService.deleteUsers(ids);
             return ResponseEntity.ok(ApiResponse.success("批量删除用户成功"));
         } catch (Exception e) {
@@ -139,6 +200,7 @@ public class UserController {
     
     // 更新用户状态
     @PatchMapping("/{id}/status")
+    @PreAuthorize("@rbac.hasPermission('user:edit')")
     public ResponseEntity<ApiResponse<User>> updateUserStatus(@PathVariable Long id, @RequestBody Map<String, String> request) {
         try {
             String status = request.get("status");
@@ -152,11 +214,16 @@ public class UserController {
     
     // 重置用户密码
     @PatchMapping("/{id}/password")
+    @PreAuthorize("@rbac.hasPermission('user:edit')")
     public ResponseEntity<ApiResponse<Void>> resetPassword(@PathVariable Long id, @RequestBody Map<String, String> request) {
         try {
             String newPassword = request.get("password");
             userService.resetPassword(id, newPassword);
             return ResponseEntity.ok(ApiResponse.success("重置密码成功"));
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error("重置密码失败: " + e.getMessage()));
         }
@@ -164,6 +231,7 @@ public class UserController {
     
     // 导出用户数据到Excel
     @GetMapping("/export")
+    @PreAuthorize("@rbac.hasPermission('user:export')")
     public ResponseEntity<byte[]> exportUsers() {
         try {
             List<User> users = userService.getAllUsersForExport();
@@ -187,6 +255,7 @@ public class UserController {
     
     // 下载导入模板
     @GetMapping("/import/template")
+    @PreAuthorize("@rbac.hasPermission('user:import')")
     public ResponseEntity<byte[]> downloadImportTemplate() {
         try {
             byte[] templateData = ExcelUtil.generateImportTemplate();
@@ -209,6 +278,7 @@ public class UserController {
     
     // 导入用户数据
     @PostMapping("/import")
+    @PreAuthorize("@rbac.hasPermission('user:import')")
     public ResponseEntity<ApiResponse<Map<String, Object>>> importUsers(@RequestParam("file") MultipartFile file) {
         try {
             // 验证文件
@@ -245,6 +315,10 @@ public class UserController {
                 return ResponseEntity.ok(ApiResponse.success("用户导入部分成功，请查看错误详情", result));
             }
             
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (IOException e) {
             return ResponseEntity.badRequest().body(ApiResponse.error("文件读取失败: " + e.getMessage()));
         } catch (Exception e) {
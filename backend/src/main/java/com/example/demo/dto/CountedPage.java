@@ -0,0 +1,28 @@
+package com.example.demo.dto;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+// 分页结果，额外记录总数是否精确；估算的总数可能与实际行数不符，是否有下一页以实际查询结果为准
+public class CountedPage<T> extends PageImpl<T> {
+
+    private final boolean totalExact;
+    private final boolean hasNext;
+
+    public CountedPage(List<T> content, Pageable pageable, long total, boolean totalExact, boolean hasNext) {
+        super(content, pageable, total);
+        this.totalExact = totalExact;
+        this.hasNext = hasNext;
+    }
+
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+}
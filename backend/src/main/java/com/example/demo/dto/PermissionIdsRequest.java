@@ -0,0 +1,18 @@
+package com.example.demo.dto;
+
+import java.util.Set;
+
+public class PermissionIdsRequest {
+    
+    private Set<Long> permissionIds;
+    
+    public PermissionIdsRequest() {}
+    
+    public Set<Long> getPermissionIds() {
+        return permissionIds;
+    }
+    
+    public void setPermissionIds(Set<Long> permissionIds) {
+        this.permissionIds = permissionIds;
+    }
+}
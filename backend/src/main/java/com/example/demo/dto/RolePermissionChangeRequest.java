@@ -0,0 +1,58 @@
+package com.example.demo.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+import java.util.Set;
+
+// 角色×权限矩阵的一次编辑：每个修改过的角色给出其完整的权限ID集合
+public class RolePermissionChangeRequest {
+    
+    @NotEmpty(message = "角色不能为空")
+    @Valid
+    private List<RoleChange> roles;
+    
+    public RolePermissionChangeRequest() {}
+    
+    public List<RoleChange> getRoles() {
+        return roles;
+    }
+    
+    public void setRoles(List<RoleChange> roles) {
+        this.roles = roles;
+    }
+    
+    public static class RoleChange {
+        
+        @NotNull(message = "角色ID不能为空")
+        private Long roleId;
+        
+        @NotNull(message = "权限ID不能为空")
+        private Set<Long> permissionIds;
+        
+        public RoleChange() {}
+        
+        public RoleChange(Long roleId, Set<Long> permissionIds) {
+            this.roleId = roleId;
+            this.permissionIds = permissionIds;
+        }
+        
+        public Long getRoleId() {
+            return roleId;
+        }
+        
+        public void setRoleId(Long roleId) {
+            this.roleId = roleId;
+        }
+        
+        public Set<Long> getPermissionIds() {
+            return permissionIds;
+        }
+        
+        public void setPermissionIds(Set<Long> permissionIds) {
+            this.permissionIds = permissionIds;
+        }
+    }
+}
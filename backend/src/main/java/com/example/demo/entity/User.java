@@ -43,6 +43,14 @@ public class User {
     @Column(name = "role")
     private UserRole role = UserRole.USER;
     
+    // 关联的角色实体（代码与role相同的角色），由UserService在保存时维护
+    @Column(name = "role_id")
+    private Long roleId;
+    
+    // 安全版本，撤销性变更时由UserService加一，使此前签发的令牌和会话失效
+    @Column(name = "security_version", nullable = false)
+    private long securityVersion;
+    
     @Enumerated(EnumType.STRING)
     @Column(name = "status")
     private UserStatus status = UserStatus.ACTIVE;
@@ -185,6 +193,22 @@ public class User {
         this.role = role;
     }
     
+    public Long getRoleId() {
+        return roleId;
+    }
+    
+    public void setRoleId(Long roleId) {
+        this.roleId = roleId;
+    }
+    
+    public long getSecurityVersion() {
+        return securityVersion;
+    }
+    
+    public void setSecurityVersion(long securityVersion) {
+        this.securityVersion = securityVersion;
+    }
+    
     public UserStatus getStatus() {
         return status;
     }
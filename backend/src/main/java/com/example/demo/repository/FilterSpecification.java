@@ -0,0 +1,130 @@
+package com.example.demo.repository;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 通用列表过滤条件：只为实际传入的条件生成谓词，条件之间用AND连接，搜索文本在多个字段间用OR连接。
+// 所有值都以参数绑定，同一组条件总是生成相同的SQL，数据库可以复用同一个执行计划。
+// 搜索文本以*结尾时按前缀匹配（LIKE 'abc%'，可以使用索引），否则按包含匹配
+public final class FilterSpecification<T> implements Specification<T> {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private final List<String> attributes = new ArrayList<>();
+    private final List<Object> values = new ArrayList<>();
+    private String searchPattern;
+    private String[] searchFields;
+
+    public static <T> FilterSpecification<T> create() {
+        return new FilterSpecification<>();
+    }
+
+    // 等值条件，值为null时忽略
+    public FilterSpecification<T> equal(String attribute, Object value) {
+        if (value != null) {
+            attributes.add(attribute);
+            values.add(value);
+        }
+        return this;
+    }
+
+    // 字符串等值条件，空白时忽略
+    public FilterSpecification<T> equal(String attribute, String value) {
+        return equal(attribute, (Object) (value != null && !value.trim().isEmpty() ? value.trim() : null));
+    }
+
+    // 枚举条件，忽略空白和无效的值
+    public <E extends Enum<E>> FilterSpecification<T> equal(String attribute, Class<E> type, String value) {
+        if (value != null && !value.trim().isEmpty()) {
+            try {
+                equal(attribute, (Object) Enum.valueOf(type, value.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                // 忽略无效的枚举值
+            }
+        }
+        return this;
+    }
+
+    // 在任一字段中搜索文本，空白时忽略
+    public FilterSpecification<T> search(String text, String... fields) {
+        if (text == null) {
+            return this;
+        }
+        String term = text.trim();
+        boolean prefix = term.endsWith("*");
+        if (prefix) {
+            term = term.substring(0, term.length() - 1);
+        }
+        if (term.isEmpty()) {
+            return this;
+        }
+        String escaped = escapeLike(term);
+        this.searchPattern = prefix ? escaped + "%" : "%" + escaped + "%";
+        this.searchFields = fields;
+        return this;
+    }
+
+    // 没有任何过滤条件
+    public boolean isEmpty() {
+        return attributes.isEmpty() && searchPattern == null;
+    }
+
+    // 过滤条件的签名，条件和值都相同的两个实例签名相同（用作总数缓存的键）
+    public String signature() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < attributes.size(); i++) {
+            appendPart(sb, attributes.get(i));
+            appendPart(sb, String.valueOf(values.get(i)));
+        }
+        if (searchPattern != null) {
+            sb.append('|');
+            appendPart(sb, searchPattern);
+            for (String field : searchFields) {
+                appendPart(sb, field);
+            }
+        }
+        return sb.toString();
+    }
+
+    // 每段带长度前缀，避免值中的分隔符造成不同条件签名相同
+    private static void appendPart(StringBuilder sb, String part) {
+        sb.append(part.length()).append(':').append(part).append(';');
+    }
+
+    @Override
+    public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        List<Predicate> predicates = new ArrayList<>(attributes.size() + 1);
+        for (int i = 0; i < attributes.size(); i++) {
+            predicates.add(cb.equal(root.get(attributes.get(i)), values.get(i)));
+        }
+        if (searchPattern != null) {
+            Predicate[] matches = new Predicate[searchFields.length];
+            for (int i = 0; i < searchFields.length; i++) {
+                matches[i] = cb.like(root.get(searchFields[i]), searchPattern, LIKE_ESCAPE);
+            }
+            predicates.add(matches.length == 1 ? matches[0] : cb.or(matches));
+        }
+        if (predicates.isEmpty()) {
+            return null;
+        }
+        return predicates.size() == 1 ? predicates.get(0) : cb.and(predicates.toArray(new Predicate[0]));
+    }
+
+    private static String escapeLike(String term) {
+        StringBuilder sb = new StringBuilder(term.length() + 4);
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                sb.append(LIKE_ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
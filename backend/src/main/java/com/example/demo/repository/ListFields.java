@@ -0,0 +1,64 @@
+package com.example.demo.repository;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+// 列表接口可以返回的字段（fields参数，逗号分隔）。只允许白名单中的字段，未指定时返回默认的摘要字段，id总会返回。
+// 字段可以是实体属性，也可以是派生表达式（如集合大小）
+public final class ListFields<T> {
+
+    private static final String ID = "id";
+
+    private final Map<String, BiFunction<Root<T>, CriteriaBuilder, Expression<?>>> fields = new LinkedHashMap<>();
+    private List<String> defaults = List.of(ID);
+
+    public static <T> ListFields<T> of(String... attributes) {
+        ListFields<T> listFields = new ListFields<>();
+        for (String attribute : attributes) {
+            listFields.fields.put(attribute, (root, cb) -> root.get(attribute));
+        }
+        return listFields;
+    }
+
+    public ListFields<T> derived(String name, BiFunction<Root<T>, CriteriaBuilder, Expression<?>> expression) {
+        fields.put(name, expression);
+        return this;
+    }
+
+    public ListFields<T> defaults(String... names) {
+        this.defaults = resolve(String.join(",", names));
+        return this;
+    }
+
+    // 解析fields参数，返回要查询的字段（id在最前）；包含未知字段时抛出异常
+    public List<String> resolve(String requested) {
+        if (requested == null || requested.isBlank()) {
+            return defaults;
+        }
+        List<String> names = new ArrayList<>();
+        names.add(ID);
+        for (String name : requested.split(",")) {
+            String field = name.trim();
+            if (field.isEmpty() || names.contains(field)) {
+                continue;
+            }
+            if (!fields.containsKey(field)) {
+                throw new RuntimeException("不支持的字段: " + field + "，可选字段: " + String.join(",", fields.keySet()));
+            }
+            names.add(field);
+        }
+        return names;
+    }
+
+    public Expression<?> expression(String name, Root<T> root, CriteriaBuilder cb) {
+        BiFunction<Root<T>, CriteriaBuilder, Expression<?>> expression = fields.get(name);
+        return expression != null ? expression.apply(root, cb) : root.get(name);
+    }
+}
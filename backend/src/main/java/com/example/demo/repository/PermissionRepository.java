@@ -1,52 +1,33 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Permission;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface PermissionRepository extends JpaRepository<Permission, Long> {
+public interface PermissionRepository extends JpaRepository<Permission, Long>, JpaSpecificationExecutor<Permission> {
     
     Optional<Permission> findByName(String name);
     
+    // 按代码查找和启用列表使用查询缓存，表有写入提交后失效
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Permission> findByCode(String code);
     
     boolean existsByName(String name);
     
     boolean existsByCode(String code);
     
-    // 按状态查询权限
-    Page<Permission> findByStatus(Permission.PermissionStatus status, Pageable pageable);
-    
-    // 按模块查询权限
-    Page<Permission> findByModule(String module, Pageable pageable);
-    
-    // 按类型查询权限
-    Page<Permission> findByType(Permission.PermissionType type, Pageable pageable);
-    
-    // 搜索权限（按名称、代码或模块）
-    Page<Permission> findByNameContainingOrCodeContainingOrModuleContaining(
-        String name, String code, String module, Pageable pageable);
-    
-    // 复合查询：搜索文本 + 状态
-    Page<Permission> findByStatusAndNameContainingOrStatusAndCodeContainingOrStatusAndModuleContaining(
-        Permission.PermissionStatus status1, String name, 
-        Permission.PermissionStatus status2, String code,
-        Permission.PermissionStatus status3, String module,
-        Pageable pageable);
-    
-    // 复合查询：搜索文本 + 模块
-    Page<Permission> findByModuleAndNameContainingOrModuleAndCodeContaining(
-        String module1, String name, 
-        String module2, String code, 
-        Pageable pageable);
-    
     // 获取所有启用的权限，按模块和排序字段排序
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Permission> findByStatusOrderByModuleAscSortOrderAsc(Permission.PermissionStatus status);
     
     // 按模块获取启用的权限
@@ -54,4 +35,9 @@ public interface PermissionRepository extends JpaRepository<Permission, Long> {
     
     // 获取所有模块名称
     List<String> findDistinctModuleByStatus(Permission.PermissionStatus status);
-} 
\ No newline at end of file
+    
+    // 用户的有效权限（经user_effective_permissions主键索引查找），只返回启用的权限
+    @Query(value = "SELECT p.* FROM user_effective_permissions e JOIN permissions p ON p.id = e.permission_id "
+            + "WHERE e.user_id = :userId AND p.status = 'ACTIVE' ORDER BY p.module, p.sort_order, p.id", nativeQuery = true)
+    List<Permission> findEffectiveByUserId(@Param("userId") Long userId);
+}
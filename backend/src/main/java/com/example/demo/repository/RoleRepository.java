@@ -1,10 +1,14 @@
 package com.example.demo.repository;
 
+import com.example.demo.entity.Permission;
 import com.example.demo.entity.Role;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -12,36 +16,33 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface RoleRepository extends JpaRepository<Role, Long> {
+public interface RoleRepository extends JpaRepository<Role, Long>, JpaSpecificationExecutor<Role> {
     
     Optional<Role> findByName(String name);
     
+    // 按代码查找和启用列表使用查询缓存，表有写入提交后失效
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Role> findByCode(String code);
     
     boolean existsByName(String name);
     
     boolean existsByCode(String code);
     
-    // 按状态查询角色
-    Page<Role> findByStatus(Role.RoleStatus status, Pageable pageable);
-    
-    // 搜索角色（按名称或代码）
-    Page<Role> findByNameContainingOrCodeContaining(String name, String code, Pageable pageable);
-    
-    // 复合查询：搜索文本 + 状态
-    Page<Role> findByStatusAndNameContainingOrStatusAndCodeContaining(
-        Role.RoleStatus status1, String name, 
-        Role.RoleStatus status2, String code, 
-        Pageable pageable);
-    
     // 获取所有启用的角色，按排序字段排序
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Role> findByStatusOrderBySortOrderAsc(Role.RoleStatus status);
     
-    // 查询角色及其权限
-    @Query("SELECT r FROM Role r LEFT JOIN FETCH r.permissions WHERE r.id = :id")
+    // 查询角色及其权限（单个角色，一条关联查询）
+    @EntityGraph(attributePaths = "permissions")
+    @Query("SELECT r FROM Role r WHERE r.id = :id")
     Optional<Role> findByIdWithPermissions(@Param("id") Long id);
     
-    // 查询所有角色及其权限
-    @Query("SELECT r FROM Role r LEFT JOIN FETCH r.permissions")
-    List<Role> findAllWithPermissions();
+    // 所有角色与权限的对应关系（角色ID, 权限），每个权限实体在持久化上下文中只有一份
+    @Query("SELECT r.id, p FROM Role r JOIN r.permissions p ORDER BY p.module, p.sortOrder, p.id")
+    List<Object[]> findPermissionAssignments();
+    
+    // 指定状态的角色与权限的对应关系（角色代码, 权限代码），用于构建权限位集
+    @Query("SELECT r.code, p.code FROM Role r JOIN r.permissions p WHERE r.status = :roleStatus AND p.status = :permissionStatus")
+    List<Object[]> findAssignedCodes(@Param("roleStatus") Role.RoleStatus roleStatus,
+                                     @Param("permissionStatus") Permission.PermissionStatus permissionStatus);
 } 
\ No newline at end of file
@@ -1,15 +1,22 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.User;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
     
     Optional<User> findByUsername(String username);
     
@@ -19,37 +26,18 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     boolean existsByEmail(String email);
     
-    // 搜索用户（按用户名、全名或邮箱）
-    Page<User> findByUsernameContainingOrFullNameContainingOrEmailContaining(
-        String username, String fullName, String email, Pageable pageable);
-    
-    // 按状态查询用户
-    Page<User> findByStatus(User.UserStatus status, Pageable pageable);
-    
-    // 按角色查询用户
-    Page<User> findByRole(User.UserRole role, Pageable pageable);
-    
-    // 按状态和角色查询用户
-    Page<User> findByStatusAndRole(User.UserStatus status, User.UserRole role, Pageable pageable);
-    
-    // 复合查询：搜索文本 + 状态
-    Page<User> findByStatusAndUsernameContainingOrStatusAndFullNameContainingOrStatusAndEmailContaining(
-        User.UserStatus status1, String username, 
-        User.UserStatus status2, String fullName, 
-        User.UserStatus status3, String email, 
-        Pageable pageable);
-    
-    // 复合查询：搜索文本 + 角色
-    Page<User> findByRoleAndUsernameContainingOrRoleAndFullNameContainingOrRoleAndEmailContaining(
-        User.UserRole role1, String username, 
-        User.UserRole role2, String fullName, 
-        User.UserRole role3, String email, 
-        Pageable pageable);
-    
-    // 复合查询：搜索文本 + 状态 + 角色
-    Page<User> findByStatusAndRoleAndUsernameContainingOrStatusAndRoleAndFullNameContainingOrStatusAndRoleAndEmailContaining(
-        User.UserStatus status1, User.UserRole role1, String username,
-        User.UserStatus status2, User.UserRole role2, String fullName,
-        User.UserStatus status3, User.UserRole role3, String email,
-        Pageable pageable);
-} 
\ No newline at end of file
+    List<User> findByUsernameIn(Collection<String> usernames);
+    
+    // 按角色代码把用户关联到角色实体（users.role与角色代码一致）。
+    // 声明只修改users表，否则原生更新会清空整个二级缓存
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "users"))
+    @Query(value = "UPDATE users SET role_id = :roleId WHERE role = :code AND (role_id IS NULL OR role_id <> :roleId)", nativeQuery = true)
+    int linkRole(@Param("roleId") Long roleId, @Param("code") String code);
+    
+    // 角色代码变更后，解除不再与之一致的用户的关联
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "users"))
+    @Query(value = "UPDATE users SET role_id = NULL WHERE role_id = :roleId AND role <> :code", nativeQuery = true)
+    int unlinkRole(@Param("roleId") Long roleId, @Param("code") String code);
+}
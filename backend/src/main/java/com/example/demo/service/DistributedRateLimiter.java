@@ -0,0 +1,141 @@
+package com.example.demo.service;
+
+import com.example.demo.util.RateLimitBucket;
+import io.github.bucket4j.ConsumptionProbe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 集群限流：每个客户端的桶保存在TokenLeaseStore中由所有节点共享，
+// 节点一次租用一小批令牌在本地消费，用完或周期结束时再租；共享存储不可用时暂时退回节点本地限流
+public class DistributedRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistributedRateLimiter.class);
+
+    private final TokenLeaseStore store;
+    private final long retryAfterFailureMillis;
+    private volatile long unavailableUntil;
+
+    public DistributedRateLimiter(TokenLeaseStore store, Duration retryAfterFailure) {
+        this.store = store;
+        this.retryAfterFailureMillis = retryAfterFailure.toMillis();
+    }
+
+    // 创建共享桶的本地代理；fallback为共享存储不可用时使用的本地桶
+    public RateLimitBucket bucket(String key, long capacity, Duration refillPeriod, int batchSize, RateLimitBucket fallback) {
+        return new LeasedBucket(key, capacity, refillPeriod.toMillis(), Math.max(1, batchSize), fallback);
+    }
+
+    private boolean isAvailable(long now) {
+        return now >= unavailableUntil;
+    }
+
+    private void markUnavailable(long now, RuntimeException e) {
+        if (isAvailable(now)) {
+            logger.warn("限流共享存储不可用，{}秒内使用节点本地限流: {}",
+                    TimeUnit.MILLISECONDS.toSeconds(retryAfterFailureMillis), e.getMessage());
+        }
+        unavailableUntil = now + retryAfterFailureMillis;
+    }
+
+    // 持有本节点租到的令牌；命中本地余额时无锁，不访问共享存储。
+    // 只实现RateLimitBucket的两种消费操作，不提供增减令牌、修改配置等无法在租约上正确实现的操作
+    private final class LeasedBucket implements RateLimitBucket {
+
+        private final String key;
+        private final long capacity;
+        private final long refillPeriodMillis;
+        private final int batchSize;
+        private final RateLimitBucket fallback;
+
+        private final AtomicLong tokens = new AtomicLong();
+        private volatile long leaseExpiresAt;
+        // 上次租用时共享桶已取空，本周期结束前无需再访问共享存储
+        private volatile boolean exhausted;
+
+        LeasedBucket(String key, long capacity, long refillPeriodMillis, int batchSize, RateLimitBucket fallback) {
+            this.key = key;
+            this.capacity = capacity;
+            this.refillPeriodMillis = refillPeriodMillis;
+            this.batchSize = batchSize;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public boolean tryConsume(long numTokens) {
+            Outcome outcome = consume(numTokens);
+            return outcome == Outcome.FALLBACK ? fallback.tryConsume(numTokens) : outcome == Outcome.CONSUMED;
+        }
+
+        // 剩余数为本节点租约内的余额
+        @Override
+        public ConsumptionProbe tryConsumeAndReturnRemaining(long numTokens) {
+            Outcome outcome = consume(numTokens);
+            if (outcome == Outcome.FALLBACK) {
+                return fallback.tryConsumeAndReturnRemaining(numTokens);
+            }
+            long now = System.currentTimeMillis();
+            long remaining = now < leaseExpiresAt ? tokens.get() : 0;
+            long nanosToReset = TimeUnit.MILLISECONDS.toNanos(Math.max(0, leaseExpiresAt - now));
+            return outcome == Outcome.CONSUMED
+                    ? ConsumptionProbe.consumed(remaining, nanosToReset)
+                    : ConsumptionProbe.rejected(remaining, nanosToReset, nanosToReset);
+        }
+
+        private Outcome consume(long numTokens) {
+            if (takeFromLease(numTokens)) {
+                return Outcome.CONSUMED;
+            }
+
+            synchronized (this) {
+                if (takeFromLease(numTokens)) {
+                    return Outcome.CONSUMED;
+                }
+
+                long now = System.currentTimeMillis();
+                if (exhausted && now < leaseExpiresAt) {
+                    return Outcome.REJECTED;
+                }
+                if (!isAvailable(now)) {
+                    return Outcome.FALLBACK;
+                }
+
+                long requested = Math.max(batchSize, numTokens);
+                try {
+                    TokenLeaseStore.Lease lease = store.lease(key, capacity, refillPeriodMillis, requested);
+                    tokens.set(lease.getGranted());
+                    leaseExpiresAt = now + lease.getTtlMillis();
+                    exhausted = lease.getGranted() < requested;
+                } catch (RuntimeException e) {
+                    markUnavailable(now, e);
+                    return Outcome.FALLBACK;
+                }
+                return takeFromLease(numTokens) ? Outcome.CONSUMED : Outcome.REJECTED;
+            }
+        }
+
+        private boolean takeFromLease(long numTokens) {
+            if (System.currentTimeMillis() >= leaseExpiresAt) {
+                return false;
+            }
+            long current;
+            do {
+                current = tokens.get();
+                if (current < numTokens) {
+                    return false;
+                }
+            } while (!tokens.compareAndSet(current, current - numTokens));
+            return true;
+        }
+    }
+
+    // 一次消费的结果；FALLBACK表示共享存储不可用，由本地后备桶处理
+    private enum Outcome {
+        CONSUMED,
+        REJECTED,
+        FALLBACK
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Permission;
+import com.example.demo.repository.PermissionRepository;
+import com.example.demo.repository.RoleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 用户有效权限表（user_effective_permissions）的增量维护和查询。
+// 一行表示“用户通过其启用的角色拥有该权限”；权限本身的启停不写入此表，查询时再按权限状态过滤。
+// 用户、角色变更提交后，只对受影响的用户按批重算：先删除不再成立的行，再补充缺少的行，每批一个短事务，
+// 角色下用户再多也不会长时间锁表
+@Service
+public class EffectivePermissionService {
+
+    private static final Logger log = LoggerFactory.getLogger(EffectivePermissionService.class);
+
+    // 用户当前应有的权限：用户 -> 启用的角色 -> 角色权限
+    private static final String GRANTED = "SELECT 1 FROM users u"
+            + " JOIN roles r ON r.id = u.role_id"
+            + " JOIN role_permissions rp ON rp.role_id = r.id"
+            + " WHERE r.status = 'ACTIVE'";
+
+    private static final String DELETE_REVOKED_SQL = "DELETE FROM user_effective_permissions e"
+            + " WHERE e.user_id IN (:userIds)"
+            + " AND NOT EXISTS (" + GRANTED + " AND u.id = e.user_id AND rp.permission_id = e.permission_id)";
+
+    private static final String INSERT_GRANTED_SQL = "INSERT INTO user_effective_permissions (user_id, permission_id)"
+            + " SELECT u.id, rp.permission_id FROM users u"
+            + " JOIN roles r ON r.id = u.role_id"
+            + " JOIN role_permissions rp ON rp.role_id = r.id"
+            + " WHERE r.status = 'ACTIVE' AND u.id IN (:userIds)"
+            + " AND NOT EXISTS (SELECT 1 FROM user_effective_permissions e"
+            + " WHERE e.user_id = u.id AND e.permission_id = rp.permission_id)";
+
+    private static final String ROLE_USERS_SQL = "SELECT id FROM users"
+            + " WHERE role_id = :roleId AND id > :afterId ORDER BY id LIMIT :limit";
+
+    // 角色被删除或代码变更后不再关联任何角色的用户
+    private static final String UNLINKED_USERS_SQL = "SELECT id FROM users"
+            + " WHERE role_id IS NULL AND id > :afterId ORDER BY id LIMIT :limit";
+
+    private static final String USER_IDS_BY_USERNAME_SQL = "SELECT id FROM users WHERE username IN (:usernames)";
+
+    // 拥有某权限的用户：按(permission_id, user_id)索引顺序读取
+    private static final String PERMISSION_USERS_SQL = "SELECT u.id, u.username, u.full_name, u.email, u.status"
+            + " FROM user_effective_permissions e JOIN users u ON u.id = e.user_id"
+            + " WHERE e.permission_id = :permissionId AND e.user_id > :afterId"
+            + " ORDER BY e.user_id LIMIT :limit";
+
+    private static final String PERMISSION_USER_COUNT_SQL = "SELECT COUNT(*) FROM user_effective_permissions"
+            + " WHERE permission_id = :permissionId";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final RoleRepository roleRepository;
+    private final PermissionRepository permissionRepository;
+    private final TransactionTemplate batchTransaction;
+    private final int batchSize;
+
+    public EffectivePermissionService(NamedParameterJdbcTemplate jdbcTemplate,
+                                      RoleRepository roleRepository,
+                                      PermissionRepository permissionRepository,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${effective-permissions.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.roleRepository = roleRepository;
+        this.permissionRepository = permissionRepository;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+    }
+
+    // 重算指定用户的有效权限
+    public void refresh(Collection<Long> userIds) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            refreshBatch(ids.subList(from, Math.min(from + batchSize, ids.size())));
+        }
+    }
+
+    private void refreshBatch(List<Long> userIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource("userIds", userIds);
+        try {
+            applyBatch(params);
+        } catch (DataIntegrityViolationException e) {
+            // 并发的刷新已插入了同样的行，重新计算一次即可
+            log.debug("有效权限刷新冲突，重试: {}", e.getMessage());
+            applyBatch(params);
+        }
+    }
+
+    private void applyBatch(MapSqlParameterSource params) {
+        batchTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.update(DELETE_REVOKED_SQL, params);
+            jdbcTemplate.update(INSERT_GRANTED_SQL, params);
+        });
+    }
+
+    // 按用户ID顺序分批重算角色下的全部用户
+    public void refreshRole(Long roleId) {
+        refreshPaged(ROLE_USERS_SQL, new MapSqlParameterSource("roleId", roleId));
+    }
+
+    // 按用户ID顺序分批清理未关联角色的用户的有效权限
+    public void refreshUnlinked() {
+        refreshPaged(UNLINKED_USERS_SQL, new MapSqlParameterSource());
+    }
+
+    private void refreshPaged(String usersSql, MapSqlParameterSource params) {
+        long afterId = 0;
+        while (true) {
+            List<Long> userIds = jdbcTemplate.queryForList(usersSql, params
+                    .addValue("afterId", afterId)
+                    .addValue("limit", batchSize), Long.class);
+            if (userIds.isEmpty()) {
+                return;
+            }
+            refreshBatch(userIds);
+            if (userIds.size() < batchSize) {
+                return;
+            }
+            afterId = userIds.get(userIds.size() - 1);
+        }
+    }
+
+    // 用户保存后（含角色变化）重算；删除的用户由外键级联删除
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        Set<Long> userIds = new LinkedHashSet<>(event.getUserIds());
+        if (!event.getUsernames().isEmpty()) {
+            userIds.addAll(jdbcTemplate.queryForList(USER_IDS_BY_USERNAME_SQL,
+                    new MapSqlParameterSource("usernames", event.getUsernames()), Long.class));
+        }
+        refresh(userIds);
+    }
+
+    // 角色状态、权限分配或代码变化后重算该角色下的用户；
+    // 角色删除或代码变更时其原有用户的role_id已置空，再分批清理这些用户的行
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoleChanged(RoleChangedEvent event) {
+        for (Long roleId : event.getRoleIds()) {
+            if (roleRepository.existsById(roleId)) {
+                refreshRole(roleId);
+            }
+        }
+        if (event.isUsersUnlinked()) {
+            refreshUnlinked();
+        }
+    }
+
+    // 用户当前有效的权限
+    public List<Permission> findPermissionsOfUser(Long userId) {
+        return permissionRepository.findEffectiveByUserId(userId);
+    }
+
+    // 拥有指定权限的用户（摘要字段），按用户ID游标分页，afterId为上一页最后一个用户ID
+    public Map<String, Object> findUsersWithPermission(Long permissionId, long afterId, int size) {
+        List<Map<String, Object>> users = jdbcTemplate.query(PERMISSION_USERS_SQL, new MapSqlParameterSource()
+                .addValue("permissionId", permissionId)
+                .addValue("afterId", afterId)
+                .addValue("limit", size + 1), (rs, rowNum) -> {
+            Map<String, Object> user = new LinkedHashMap<>();
+            user.put("id", rs.getLong("id"));
+            user.put("username", rs.getString("username"));
+            user.put("fullName", rs.getString("full_name"));
+            user.put("email", rs.getString("email"));
+            user.put("status", rs.getString("status"));
+            return user;
+        });
+        boolean hasNext = users.size() > size;
+        if (hasNext) {
+            users.remove(users.size() - 1);
+        }
+        Long total = jdbcTemplate.queryForObject(PERMISSION_USER_COUNT_SQL,
+                new MapSqlParameterSource("permissionId", permissionId), Long.class);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", users);
+        result.put("hasNext", hasNext);
+        result.put("nextAfterId", hasNext ? users.get(users.size() - 1).get("id") : null);
+        result.put("totalItems", total);
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.demo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.util.concurrent.TimeUnit;
+
+// 进程内的共享桶存储，语义与RedisTokenLeaseStore一致，用于单机运行和在没有Redis的环境中验证租用逻辑
+public class InMemoryTokenLeaseStore implements TokenLeaseStore {
+
+    // 一个补充周期内的桶状态，周期结束后条目自动过期
+    private static final class Window {
+        final long tokens;
+        final long resetAtMillis;
+
+        Window(long tokens, long resetAtMillis) {
+            this.tokens = tokens;
+            this.resetAtMillis = resetAtMillis;
+        }
+    }
+
+    private final Cache<String, Window> windows = Caffeine.newBuilder()
+            .expireAfter(new Expiry<String, Window>() {
+                @Override
+                public long expireAfterCreate(String key, Window window, long currentTime) {
+                    return untilReset(window);
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Window window, long currentTime, long currentDuration) {
+                    return untilReset(window);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Window window, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    private static long untilReset(Window window) {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, window.resetAtMillis - System.currentTimeMillis()));
+    }
+
+    @Override
+    public Lease lease(String key, long capacity, long refillPeriodMillis, long requested) {
+        long now = System.currentTimeMillis();
+        long[] granted = new long[1];
+        Window window = windows.asMap().compute(key, (k, current) -> {
+            if (current == null || now >= current.resetAtMillis) {
+                current = new Window(capacity, now + refillPeriodMillis);
+            }
+            granted[0] = Math.min(current.tokens, requested);
+            return new Window(current.tokens - granted[0], current.resetAtMillis);
+        });
+        return new Lease(granted[0], window.resetAtMillis - now);
+    }
+}
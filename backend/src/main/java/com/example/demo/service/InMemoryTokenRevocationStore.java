@@ -0,0 +1,29 @@
+package com.example.demo.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// 单机内存撤销存储，过期记录在遍历时顺带清理
+public class InMemoryTokenRevocationStore implements TokenRevocationStore {
+
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    @Override
+    public void revoke(String tokenId, long expiresAtMillis) {
+        revoked.merge(tokenId, expiresAtMillis, Math::max);
+    }
+
+    @Override
+    public boolean isRevoked(String tokenId) {
+        Long expiresAt = revoked.get(tokenId);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    @Override
+    public void forEachActive(Consumer<String> consumer) {
+        long now = System.currentTimeMillis();
+        revoked.entrySet().removeIf(entry -> entry.getValue() <= now);
+        revoked.keySet().forEach(consumer);
+    }
+}
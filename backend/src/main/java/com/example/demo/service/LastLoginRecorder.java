@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 最后登录时间的异步合并写入：登录时只写内存缓冲，同一用户多次登录只保留最新时间，
+// 由后台线程定期以一条批量UPDATE落库，应用关闭时再刷新一次
+@Service
+public class LastLoginRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(LastLoginRecorder.class);
+
+    private static final String UPDATE_SQL = "UPDATE users SET last_login = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public LastLoginRecorder(JdbcTemplate jdbcTemplate,
+                             @Value("${user.last-login.flush-interval-ms:5000}") long flushIntervalMillis,
+                             @Value("${user.last-login.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "last-login-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // 记录登录时间，只写内存
+    public void record(Long userId, LocalDateTime loginTime) {
+        pending.merge(userId, loginTime, (previous, current) -> current.isAfter(previous) ? current : previous);
+    }
+
+    // 将缓冲区批量写入数据库
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // 只取出快照时的值；期间有更新的用户保留在缓冲区，下次刷新
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<Long, LocalDateTime> entry : pending.entrySet()) {
+            Long userId = entry.getKey();
+            LocalDateTime loginTime = entry.getValue();
+            if (pending.remove(userId, loginTime)) {
+                batch.add(new Object[]{Timestamp.valueOf(loginTime), userId});
+            }
+        }
+
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            List<Object[]> chunk = batch.subList(from, Math.min(from + batchSize, batch.size()));
+            try {
+                jdbcTemplate.batchUpdate(UPDATE_SQL, chunk);
+            } catch (RuntimeException e) {
+                // 写入失败时放回缓冲区，等待下次重试
+                logger.warn("批量更新最后登录时间失败，{}条记录将重试: {}", chunk.size(), e.getMessage());
+                for (Object[] args : chunk) {
+                    record((Long) args[1], ((Timestamp) args[0]).toLocalDateTime());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.FilterSpecification;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Table;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 列表总数的统计策略。精确总数按“实体+过滤条件”缓存，实体所在表有写入提交后整体失效；
+// 估算模式在PostgreSQL上对无过滤条件的列表读取planner统计信息（pg_class.reltuples），
+// 有过滤条件、统计信息缺失或H2等其他数据库时退回缓存的精确总数
+@Service
+public class ListCountService {
+
+    private static final Logger log = LoggerFactory.getLogger(ListCountService.class);
+
+    public enum Mode {
+        EXACT,
+        ESTIMATED;
+
+        // 解析请求参数，无法识别时按精确统计
+        public static Mode parse(String value) {
+            return value != null && (value.equalsIgnoreCase("estimated") || value.equalsIgnoreCase("estimate"))
+                    ? ESTIMATED : EXACT;
+        }
+    }
+
+    public static final class Result {
+        private final long total;
+        private final boolean exact;
+
+        Result(long total, boolean exact) {
+            this.total = total;
+            this.exact = exact;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public boolean isExact() {
+            return exact;
+        }
+    }
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+    // 键为“实体类名:写入代数:过滤条件签名”；写入后代数加一，旧代数的条目不会再被读到
+    private final Cache<String, Long> counts;
+    private final ConcurrentHashMap<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+    private boolean postgres;
+
+    public ListCountService(EntityManagerFactory entityManagerFactory,
+                            JdbcTemplate jdbcTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${list-count.cache.max-size:1000}") long maxSize,
+                            @Value("${list-count.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.jdbcTemplate = jdbcTemplate;
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, counts, "list-counts");
+    }
+
+    @PostConstruct
+    void init() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        postgres = "PostgreSQL".equalsIgnoreCase(product);
+
+        // 提交后才失效：提交前开始的统计用的是旧代数，结果写入后也不会被读到
+        TableWriteListener listener = new TableWriteListener();
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+    }
+
+    public <T> Result count(Class<T> entityType, JpaSpecificationExecutor<T> repository,
+                            FilterSpecification<T> filter, Mode mode) {
+        if (mode == Mode.ESTIMATED && postgres && filter.isEmpty()) {
+            Long estimate = estimateRows(entityType);
+            if (estimate != null && estimate > 0) {
+                return new Result(estimate, false);
+            }
+        }
+
+        long generation = generations.computeIfAbsent(entityType, type -> new AtomicLong()).get();
+        String key = entityType.getName() + ":" + generation + ":" + filter.signature();
+        Long total = counts.get(key, k -> repository.count(filter));
+        return new Result(total, true);
+    }
+
+    // 表从未ANALYZE时reltuples为-1
+    private Long estimateRows(Class<?> entityType) {
+        Table table = entityType.getAnnotation(Table.class);
+        String tableName = table != null && !table.name().isEmpty() ? table.name() : entityType.getSimpleName().toLowerCase();
+        try {
+            return jdbcTemplate.queryForObject(
+                    "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)", Long.class, tableName);
+        } catch (Exception e) {
+            log.warn("读取表{}的统计信息失败，改为精确统计: {}", tableName, e.getMessage());
+            return null;
+        }
+    }
+
+    private void invalidate(Class<?> entityType) {
+        AtomicLong generation = generations.get(entityType);
+        if (generation == null) {
+            return;
+        }
+        generation.incrementAndGet();
+        String prefix = entityType.getName() + ":";
+        counts.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private class TableWriteListener implements PostCommitInsertEventListener,
+            PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            invalidate(event.getPersister().getMappedClass());
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            invalidate(event.getPersister().getMappedClass());
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            invalidate(event.getPersister().getMappedClass());
+        }
+
+        // 提交失败时数据没有变化，无需失效
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+        }
+
+        @Override
+        public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        }
+
+        @Override
+        public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CountedPage;
+import com.example.demo.repository.FilterSpecification;
+import com.example.demo.repository.ListFields;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 列表接口的投影查询：按fields只SELECT需要的列，结果是字段名到值的Map，
+// 不创建实体、不进入持久化上下文，也就没有脏检查快照
+@Service
+public class ListProjectionService {
+
+    private static final String ID = "id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ListCountService listCountService;
+
+    public ListProjectionService(ListCountService listCountService) {
+        this.listCountService = listCountService;
+    }
+
+    // 分页查询，多读一行判断是否有下一页，总数按countMode统计
+    public <T> CountedPage<Map<String, Object>> page(Class<T> entityType, JpaSpecificationExecutor<T> repository,
+                                                     FilterSpecification<T> filter, ListFields<T> listFields,
+                                                     String fields, Pageable pageable, ListCountService.Mode countMode) {
+        List<String> names = listFields.resolve(fields);
+        List<Map<String, Object>> rows = query(entityType, filter, listFields, names, pageable.getSort(), null,
+                pageable.getOffset(), pageable.getPageSize() + 1);
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        if (hasNext) {
+            rows.remove(rows.size() - 1);
+        }
+        ListCountService.Result count = listCountService.count(entityType, repository, filter, countMode);
+        return new CountedPage<>(rows, pageable, count.getTotal(), count.isExact(), hasNext);
+    }
+
+    // 游标分页：从position之后取limit行。排序字段和ID会加入查询结果，用于生成下一页游标
+    public <T> Window<Map<String, Object>> scroll(Class<T> entityType, FilterSpecification<T> filter,
+                                                  ListFields<T> listFields, String fields, Sort sort,
+                                                  KeysetScrollPosition position, int limit) {
+        Sort keysetSort = sort.getOrderFor(ID) != null ? sort : sort.and(Sort.by(ID));
+        List<String> names = new ArrayList<>(listFields.resolve(fields));
+        for (Sort.Order order : keysetSort) {
+            if (!names.contains(order.getProperty())) {
+                names.add(order.getProperty());
+            }
+        }
+
+        List<Map<String, Object>> rows = query(entityType, filter, listFields, names, keysetSort,
+                position.isInitial() ? null : position.getKeys(), 0, limit + 1);
+        boolean hasNext = rows.size() > limit;
+        if (hasNext) {
+            rows.remove(rows.size() - 1);
+        }
+        return Window.from(rows, index -> {
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (Sort.Order order : keysetSort) {
+                keys.put(order.getProperty(), rows.get(index).get(order.getProperty()));
+            }
+            return ScrollPosition.forward(keys);
+        }, hasNext);
+    }
+
+    private <T> List<Map<String, Object>> query(Class<T> entityType, FilterSpecification<T> filter,
+                                                ListFields<T> listFields, List<String> names, Sort sort,
+                                                Map<String, Object> after, long offset, int maxResults) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> root = query.from(entityType);
+
+        List<Selection<?>> selections = new ArrayList<>(names.size());
+        for (String name : names) {
+            selections.add(listFields.expression(name, root, cb).alias(name));
+        }
+        query.multiselect(selections);
+
+        List<Predicate> predicates = new ArrayList<>(2);
+        Predicate filterPredicate = filter.toPredicate(root, query, cb);
+        if (filterPredicate != null) {
+            predicates.add(filterPredicate);
+        }
+        if (after != null) {
+            predicates.add(keysetPredicate(root, cb, sort, after));
+        }
+        query.where(predicates.toArray(new Predicate[0]));
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        List<Tuple> tuples = entityManager.createQuery(query)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(maxResults)
+                .getResultList();
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < names.size(); i++) {
+                row.put(names.get(i), tuple.get(i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // (a > ?) OR (a = ? AND id > ?) 形式的定位条件，比较方向随各字段的排序方向
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Predicate keysetPredicate(Root<T> root, CriteriaBuilder cb, Sort sort, Map<String, Object> keys) {
+        List<Sort.Order> orders = sort.toList();
+        List<Predicate> alternatives = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            List<Predicate> conjunction = new ArrayList<>(i + 1);
+            for (int j = 0; j < i; j++) {
+                String property = orders.get(j).getProperty();
+                conjunction.add(cb.equal(root.get(property), keys.get(property)));
+            }
+            Sort.Order order = orders.get(i);
+            Expression<Comparable> path = root.get(order.getProperty());
+            Comparable value = (Comparable) keys.get(order.getProperty());
+            conjunction.add(order.isAscending() ? cb.greaterThan(path, value) : cb.lessThan(path, value));
+            alternatives.add(cb.and(conjunction.toArray(new Predicate[0])));
+        }
+        return cb.or(alternatives.toArray(new Predicate[0]));
+    }
+}
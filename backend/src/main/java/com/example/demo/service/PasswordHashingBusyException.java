@@ -0,0 +1,22 @@
+package com.example.demo.service;
+
+// 密码哈希线程池已满或等待超时，调用方应返回503并提示稍后重试
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingBusyException(long retryAfterSeconds) {
+        super("系统繁忙，请稍后再试");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    // 拒绝是常规的背压信号，不需要堆栈
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
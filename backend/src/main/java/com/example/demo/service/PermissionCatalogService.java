@@ -0,0 +1,190 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.entity.Permission;
+import com.example.demo.repository.PermissionRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 启用权限的目录（全部权限、模块列表、按模块分组的权限树、各模块的权限），供管理后台构建菜单。
+// 每个权限版本只查询一次数据库，并把各接口的响应体预先序列化为字节，ETag取自权限版本号；
+// 客户端带上次的ETag重复请求时直接返回304，不查询数据库也不经过Jackson。
+// 本实例的权限写操作提交后立即重建；后台线程按permission-catalog.refresh-interval-ms比较库中的权限版本号，
+// 其他实例的修改最迟在一个检查间隔后重建生效
+@Service
+public class PermissionCatalogService {
+
+    private static final Logger log = LoggerFactory.getLogger(PermissionCatalogService.class);
+
+    // 预先序列化的响应体及其ETag
+    public static final class Resource {
+        private final byte[] body;
+        private final String etag;
+
+        Resource(byte[] body, String etag) {
+            this.body = body;
+            this.etag = etag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    private static final class Snapshot {
+        // 构建时的权限版本号
+        final long version;
+        final Resource active;
+        final Resource modules;
+        final Resource tree;
+        final Map<String, Resource> byModule;
+        // 不存在的模块共用的空列表响应
+        final Resource emptyModule;
+
+        Snapshot(long version, Resource active, Resource modules, Resource tree, Map<String, Resource> byModule, Resource emptyModule) {
+            this.version = version;
+            this.active = active;
+            this.modules = modules;
+            this.tree = tree;
+            this.byModule = byModule;
+            this.emptyModule = emptyModule;
+        }
+    }
+
+    private final PermissionRepository permissionRepository;
+    private final PermissionVersionService permissionVersionService;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Snapshot snapshot;
+
+    public PermissionCatalogService(PermissionRepository permissionRepository,
+                                    PermissionVersionService permissionVersionService,
+                                    ObjectMapper objectMapper,
+                                    @Value("${permission-catalog.refresh-interval-ms:2000}") long refreshIntervalMillis) {
+        this.permissionRepository = permissionRepository;
+        this.permissionVersionService = permissionVersionService;
+        this.objectMapper = objectMapper;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "permission-catalog-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshIfStale, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public Resource activePermissions() {
+        return snapshot().active;
+    }
+
+    public Resource modules() {
+        return snapshot().modules;
+    }
+
+    public Resource tree() {
+        return snapshot().tree;
+    }
+
+    public Resource modulePermissions(String module) {
+        Snapshot current = snapshot();
+        return current.byModule.getOrDefault(module, current.emptyModule);
+    }
+
+    // 应用启动完成前（初始化数据期间）收到请求时当场加载
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            rebuild();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPermissionChanged(PermissionChangedEvent event) {
+        rebuild();
+    }
+
+    // 库中的权限版本号与快照不一致时重建（其他实例的变更）；尚未加载时留给首次请求或启动完成事件
+    void refreshIfStale() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        try {
+            if (permissionVersionService.current() != current.version) {
+                rebuild();
+            }
+        } catch (RuntimeException e) {
+            log.warn("权限目录刷新失败: {}", e.getMessage());
+        }
+    }
+
+    // 先读版本号再读权限：与写操作并发时，ETag最多落后于内容，下次变更后即纠正，不会出现新版本号配旧内容
+    private synchronized void rebuild() {
+        long version = permissionVersionService.current();
+        List<Permission> permissions = permissionRepository.findByStatusOrderByModuleAscSortOrderAsc(Permission.PermissionStatus.ACTIVE);
+        Map<String, List<Permission>> grouped = new LinkedHashMap<>();
+        for (Permission permission : permissions) {
+            grouped.computeIfAbsent(permission.getModule(), module -> new ArrayList<>()).add(permission);
+        }
+
+        List<Map<String, Object>> tree = new ArrayList<>(grouped.size());
+        Map<String, Resource> byModule = new HashMap<>();
+        for (Map.Entry<String, List<Permission>> entry : grouped.entrySet()) {
+            Map<String, Object> node = new LinkedHashMap<>();
+            node.put("module", entry.getKey());
+            node.put("permissions", entry.getValue());
+            tree.add(node);
+            byModule.put(entry.getKey(), resource(version, "获取模块权限成功", entry.getValue()));
+        }
+
+        snapshot = new Snapshot(
+                version,
+                resource(version, "获取启用权限成功", permissions),
+                resource(version, "获取模块列表成功", new ArrayList<>(grouped.keySet())),
+                resource(version, "获取权限树成功", tree),
+                Map.copyOf(byModule),
+                resource(version, "获取模块权限成功", List.of()));
+        log.debug("权限目录已重建：版本{}，权限{}个，模块{}个", version, permissions.size(), grouped.size());
+    }
+
+    private Resource resource(long version, String message, Object data) {
+        try {
+            return new Resource(objectMapper.writeValueAsBytes(ApiResponse.success(message, data)), "\"permissions-v" + version + "\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("权限目录序列化失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
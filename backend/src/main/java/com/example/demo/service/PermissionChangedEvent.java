@@ -0,0 +1,22 @@
+package com.example.demo.service;
+
+import java.util.Collection;
+import java.util.List;
+
+// 权限数据变更事件，由PermissionService在写操作后发布
+public class PermissionChangedEvent {
+
+    private final Collection<Long> permissionIds;
+
+    public PermissionChangedEvent(Collection<Long> permissionIds) {
+        this.permissionIds = permissionIds != null ? List.copyOf(permissionIds) : List.of();
+    }
+
+    public static PermissionChangedEvent of(Long... permissionIds) {
+        return new PermissionChangedEvent(List.of(permissionIds));
+    }
+
+    public Collection<Long> getPermissionIds() {
+        return permissionIds;
+    }
+}
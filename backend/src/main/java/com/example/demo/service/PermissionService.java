@@ -1,15 +1,25 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CountedPage;
 import com.example.demo.entity.Permission;
+import com.example.demo.repository.FilterSpecification;
+import com.example.demo.repository.ListFields;
 import com.example.demo.repository.PermissionRepository;
+import com.example.demo.util.KeysetCursorCodec;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @Transactional
@@ -18,6 +28,29 @@ public class PermissionService {
     @Autowired
     private PermissionRepository permissionRepository;
     
+    @Autowired
+    private KeysetCursorCodec keysetCursorCodec;
+    
+    @Autowired
+    private ListCountService listCountService;
+    
+    @Autowired
+    private ListProjectionService listProjectionService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private PermissionVersionService permissionVersionService;
+    
+    // 列表接口可返回的字段，默认只返回摘要字段
+    private static final ListFields<Permission> LIST_FIELDS = ListFields.<Permission>of(
+            "id", "name", "code", "description", "module", "type", "status", "sortOrder", "createdAt", "updatedAt")
+        .defaults("id", "name", "code", "module", "type", "status");
+    
+    // 游标分页允许的排序字段（必须非空）
+    private static final Set<String> KEYSET_SORT_FIELDS = Set.of("id", "name", "code", "createdAt");
+    
     // 分页获取所有权限
     public Page<Permission> getAllPermissions(Pageable pageable) {
         return permissionRepository.findAll(pageable);
@@ -25,64 +58,38 @@ public class PermissionService {
     
     // 搜索权限
     public Page<Permission> searchPermissions(String search, Pageable pageable) {
-        return permissionRepository.findByNameContainingOrCodeContainingOrModuleContaining(
-            search, search, search, pageable);
+        return searchPermissionsWithFilters(search, null, null, null, pageable);
     }
     
-    // 带过滤条件的搜索权限
+    // 带过滤条件的搜索权限，所有条件可以任意组合，search以*结尾时按前缀匹配
     public Page<Permission> searchPermissionsWithFilters(String search, String status, String module, String type, Pageable pageable) {
-        Permission.PermissionStatus permissionStatus = null;
-        Permission.PermissionType permissionType = null;
-        
-        // 解析状态参数
-        if (status != null && !status.trim().isEmpty()) {
-            try {
-                permissionStatus = Permission.PermissionStatus.valueOf(status.toUpperCase());
-            } catch (IllegalArgumentException e) {
-                // 忽略无效的状态值
-            }
-        }
-        
-        // 解析类型参数
-        if (type != null && !type.trim().isEmpty()) {
-            try {
-                permissionType = Permission.PermissionType.valueOf(type.toUpperCase());
-            } catch (IllegalArgumentException e) {
-                // 忽略无效的类型值
-            }
-        }
-        
-        // 根据不同的过滤条件组合调用相应的查询方法
-        boolean hasSearch = search != null && !search.trim().isEmpty();
-        boolean hasStatus = permissionStatus != null;
-        boolean hasModule = module != null && !module.trim().isEmpty();
-        boolean hasType = permissionType != null;
-        
-        if (hasSearch && hasStatus) {
-            // 搜索文本 + 状态
-            return permissionRepository.findByStatusAndNameContainingOrStatusAndCodeContainingOrStatusAndModuleContaining(
-                permissionStatus, search, permissionStatus, search, permissionStatus, search, pageable);
-        } else if (hasSearch && hasModule) {
-            // 搜索文本 + 模块
-            return permissionRepository.findByModuleAndNameContainingOrModuleAndCodeContaining(
-                module, search, module, search, pageable);
-        } else if (hasSearch) {
-            // 仅搜索文本
-            return permissionRepository.findByNameContainingOrCodeContainingOrModuleContaining(
-                search, search, search, pageable);
-        } else if (hasStatus) {
-            // 仅状态
-            return permissionRepository.findByStatus(permissionStatus, pageable);
-        } else if (hasModule) {
-            // 仅模块
-            return permissionRepository.findByModule(module, pageable);
-        } else if (hasType) {
-            // 仅类型
-            return permissionRepository.findByType(permissionType, pageable);
-        } else {
-            // 无过滤条件，返回所有权限
-            return permissionRepository.findAll(pageable);
-        }
+        return permissionRepository.findAll(permissionFilter(search, status, module, type), pageable);
+    }
+    
+    // 分页列表（投影）：只查询fields指定的列，不加载实体；总数按countMode统计
+    public CountedPage<Map<String, Object>> listPermissions(String search, String status, String module, String type, String fields,
+                                                            Pageable pageable, ListCountService.Mode countMode) {
+        return listProjectionService.page(Permission.class, permissionRepository, permissionFilter(search, status, module, type), LIST_FIELDS, fields, pageable, countMode);
+    }
+    
+    // 游标分页：按排序字段和ID定位下一页，不使用OFFSET也不统计总数；after为空时从第一条开始
+    public Window<Map<String, Object>> scrollPermissions(String search, String status, String module, String type, String fields,
+                                                         Sort sort, String after, int size) {
+        KeysetScrollPosition position = keysetCursorCodec.decode(after, sort, Permission.class, KEYSET_SORT_FIELDS);
+        return listProjectionService.scroll(Permission.class, permissionFilter(search, status, module, type), LIST_FIELDS, fields, sort, position, size);
+    }
+    
+    // 统计符合过滤条件的权限数
+    public ListCountService.Result countPermissionsWithFilters(String search, String status, String module, String type, ListCountService.Mode countMode) {
+        return listCountService.count(Permission.class, permissionRepository, permissionFilter(search, status, module, type), countMode);
+    }
+    
+    private FilterSpecification<Permission> permissionFilter(String search, String status, String module, String type) {
+        return FilterSpecification.<Permission>create()
+            .equal("status", Permission.PermissionStatus.class, status)
+            .equal("module", module)
+            .equal("type", Permission.PermissionType.class, type)
+            .search(search, "name", "code", "module");
     }
     
     // 根据ID查找权限
@@ -131,7 +138,10 @@ public class PermissionService {
             permission.setSortOrder(0);
         }
         
-        return permissionRepository.save(permission);
+        Permission savedPermission = permissionRepository.save(permission);
+        permissionVersionService.increment();
+        eventPublisher.publishEvent(PermissionChangedEvent.of(savedPermission.getId()));
+        return savedPermission;
     }
     
     // 更新权限
@@ -163,7 +173,10 @@ public class PermissionService {
         existingPermission.setStatus(permission.getStatus());
         existingPermission.setSortOrder(permission.getSortOrder());
         
-        return permissionRepository.save(existingPermission);
+        Permission savedPermission = permissionRepository.save(existingPermission);
+        permissionVersionService.increment();
+        eventPublisher.publishEvent(PermissionChangedEvent.of(savedPermission.getId()));
+        return savedPermission;
     }
     
     // 删除权限
@@ -172,11 +185,15 @@ public class PermissionService {
             throw new RuntimeException("权限不存在");
         }
         permissionRepository.deleteById(id);
+        permissionVersionService.increment();
+        eventPublisher.publishEvent(PermissionChangedEvent.of(id));
     }
     
     // 批量删除权限
     public void deletePermissions(List<Long> ids) {
         permissionRepository.deleteAllById(ids);
+        permissionVersionService.increment();
+        eventPublisher.publishEvent(new PermissionChangedEvent(ids));
     }
     
     // 更新权限状态
@@ -188,7 +205,10 @@ public class PermissionService {
         
         Permission permission = permissionOpt.get();
         permission.setStatus(status);
-        return permissionRepository.save(permission);
+        Permission savedPermission = permissionRepository.save(permission);
+        permissionVersionService.increment();
+        eventPublisher.publishEvent(PermissionChangedEvent.of(id));
+        return savedPermission;
     }
     
     // 获取所有启用的权限
@@ -0,0 +1,37 @@
+package com.example.demo.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+// 权限版本号（permission_version表中的单行）。权限数据的写操作先在自己的事务内调用lock锁住这一行，
+// 有实际变更时再调用increment，版本号与数据一起提交或回滚；并发的权限写操作在这一行上排队
+@Service
+public class PermissionVersionService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PermissionVersionService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long current() {
+        Long version = jdbcTemplate.queryForObject("SELECT version FROM permission_version WHERE id = 1", Long.class);
+        return version != null ? version : 0L;
+    }
+
+    // 锁定版本行直到事务结束，返回当前版本
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long lock() {
+        Long version = jdbcTemplate.queryForObject("SELECT version FROM permission_version WHERE id = 1 FOR UPDATE", Long.class);
+        return version != null ? version : 0L;
+    }
+
+    // 版本号加一并返回新版本，必须在调用方的事务中执行
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long increment() {
+        jdbcTemplate.update("UPDATE permission_version SET version = version + 1 WHERE id = 1");
+        return current();
+    }
+}
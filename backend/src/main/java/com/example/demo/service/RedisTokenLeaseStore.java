@@ -0,0 +1,56 @@
+package com.example.demo.service;
+
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.List;
+
+// 基于Redis的共享桶：用Lua脚本原子地补充和扣减，时间取Redis服务器时钟，避免各节点时钟偏差
+public class RedisTokenLeaseStore implements TokenLeaseStore {
+
+    private static final String KEY_PREFIX = "rate:";
+
+    private static final String LEASE_SCRIPT =
+            "local capacity = tonumber(ARGV[1]) " +
+            "local period = tonumber(ARGV[2]) " +
+            "local requested = tonumber(ARGV[3]) " +
+            "local time = redis.call('TIME') " +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) " +
+            "local state = redis.call('HMGET', KEYS[1], 'tokens', 'reset') " +
+            "local tokens = tonumber(state[1]) " +
+            "local reset = tonumber(state[2]) " +
+            "if tokens == nil or reset == nil or now >= reset then " +
+            "  tokens = capacity " +
+            "  reset = now + period " +
+            "end " +
+            "local granted = math.min(tokens, requested) " +
+            "redis.call('HSET', KEYS[1], 'tokens', tokens - granted, 'reset', reset) " +
+            "redis.call('PEXPIREAT', KEYS[1], reset) " +
+            "return {granted, reset - now}";
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SCRIPT = new DefaultRedisScript<>(LEASE_SCRIPT, List.class);
+
+    // 参数按纯字符串传递；整数结果不经过反序列化
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final RedisSerializer<List> RESULT_SERIALIZER = (RedisSerializer) RedisSerializer.string();
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    public RedisTokenLeaseStore(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public Lease lease(String key, long capacity, long refillPeriodMillis, long requested) {
+        List<?> result = redisTemplate.execute(SCRIPT, RedisSerializer.string(), RESULT_SERIALIZER,
+                List.of(KEY_PREFIX + key),
+                String.valueOf(capacity), String.valueOf(refillPeriodMillis), String.valueOf(requested));
+        if (result == null || result.size() < 2) {
+            throw new IllegalStateException("限流脚本返回结果无效: " + result);
+        }
+        return new Lease(((Number) result.get(0)).longValue(), ((Number) result.get(1)).longValue());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo.service;
+
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+// 基于Redis的撤销存储：记录随令牌exp过期，并通过发布订阅通知其他节点更新布隆过滤器
+public class RedisTokenRevocationStore implements TokenRevocationStore {
+
+    private static final String KEY_PREFIX = "jwt:revoked:";
+    private static final String CHANNEL = "jwt:revoked";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    public RedisTokenRevocationStore(RedisTemplate<String, Object> redisTemplate,
+                                     RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @Override
+    public void revoke(String tokenId, long expiresAtMillis) {
+        long ttlMillis = expiresAtMillis - System.currentTimeMillis();
+        if (ttlMillis <= 0) {
+            return;
+        }
+        redisTemplate.opsForValue().set(KEY_PREFIX + tokenId, expiresAtMillis, Duration.ofMillis(ttlMillis));
+        redisTemplate.convertAndSend(CHANNEL, tokenId);
+    }
+
+    @Override
+    public boolean isRevoked(String tokenId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(KEY_PREFIX + tokenId));
+    }
+
+    @Override
+    public void forEachActive(Consumer<String> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(1000).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                consumer.accept(cursor.next().substring(KEY_PREFIX.length()));
+            }
+        }
+    }
+
+    @Override
+    public void onRemoteRevocation(Consumer<String> listener) {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            Object tokenId = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (tokenId != null) {
+                listener.accept(tokenId.toString());
+            }
+        }, new ChannelTopic(CHANNEL));
+    }
+}
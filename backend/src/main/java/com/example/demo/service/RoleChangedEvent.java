@@ -0,0 +1,37 @@
+package com.example.demo.service;
+
+import java.util.Collection;
+import java.util.List;
+
+// 角色数据变更事件，由RoleService在写操作后发布
+public class RoleChangedEvent {
+
+    private final Collection<Long> roleIds;
+    // 角色被删除或代码变更，有用户因此不再关联任何角色（role_id置空）
+    private final boolean usersUnlinked;
+
+    public RoleChangedEvent(Collection<Long> roleIds) {
+        this(roleIds, false);
+    }
+
+    public RoleChangedEvent(Collection<Long> roleIds, boolean usersUnlinked) {
+        this.roleIds = roleIds != null ? List.copyOf(roleIds) : List.of();
+        this.usersUnlinked = usersUnlinked;
+    }
+
+    public static RoleChangedEvent of(Long... roleIds) {
+        return new RoleChangedEvent(List.of(roleIds));
+    }
+
+    public static RoleChangedEvent unlinking(Long... roleIds) {
+        return new RoleChangedEvent(List.of(roleIds), true);
+    }
+
+    public Collection<Long> getRoleIds() {
+        return roleIds;
+    }
+
+    public boolean isUsersUnlinked() {
+        return usersUnlinked;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.RolePermissionChangeRequest;
+import com.example.demo.entity.Role;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// 角色权限分配的差量写入：读取涉及角色的现有分配，与目标集合比较后，
+// 新增的行用一批INSERT、移除的行用一批DELETE写入role_permissions，未变化的行不动。
+// 直接写连接表，不加载Role实体和权限集合。开始时先锁定权限版本行，并发的分配操作在这一行上排队，
+// 各自读到的现有分配都是前一个提交后的结果；有实际变更时版本号加一。
+// 绕过Hibernate写入，二级缓存中这些角色的权限集合在事务结束后（提交或回滚）清除
+@Service
+@Transactional
+public class RolePermissionChangeService {
+
+    private static final String CURRENT_SQL = "SELECT role_id, permission_id FROM role_permissions WHERE role_id IN (:roleIds)";
+
+    private static final String EXISTING_ROLES_SQL = "SELECT id FROM roles WHERE id IN (:ids)";
+
+    private static final String EXISTING_PERMISSIONS_SQL = "SELECT id FROM permissions WHERE id IN (:ids)";
+
+    private static final String INSERT_SQL = "INSERT INTO role_permissions (role_id, permission_id) VALUES (:roleId, :permissionId)";
+
+    private static final String PERMISSIONS_COLLECTION = Role.class.getName() + ".permissions";
+
+    private static final String DELETE_SQL = "DELETE FROM role_permissions WHERE role_id = :roleId AND permission_id = :permissionId";
+
+    public static final class Result {
+        private final long version;
+        private final int granted;
+        private final int revoked;
+
+        Result(long version, int granted, int revoked) {
+            this.version = version;
+            this.granted = granted;
+            this.revoked = revoked;
+        }
+
+        // 变更后的权限版本号
+        public long getVersion() {
+            return version;
+        }
+
+        public int getGranted() {
+            return granted;
+        }
+
+        public int getRevoked() {
+            return revoked;
+        }
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final PermissionVersionService permissionVersionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Cache secondLevelCache;
+
+    public RolePermissionChangeService(NamedParameterJdbcTemplate jdbcTemplate,
+                                       PermissionVersionService permissionVersionService,
+                                       ApplicationEventPublisher eventPublisher,
+                                       EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.permissionVersionService = permissionVersionService;
+        this.eventPublisher = eventPublisher;
+        this.secondLevelCache = entityManagerFactory.getCache().unwrap(Cache.class);
+    }
+
+    // 把各角色的权限设置为给定集合；同一角色出现多次时以最后一次为准
+    public Result replace(List<RolePermissionChangeRequest.RoleChange> changes) {
+        Map<Long, Set<Long>> target = new LinkedHashMap<>();
+        for (RolePermissionChangeRequest.RoleChange change : changes) {
+            if (change.getRoleId() == null) {
+                throw new RuntimeException("角色ID不能为空");
+            }
+            target.put(change.getRoleId(), change.getPermissionIds() != null ? new HashSet<>(change.getPermissionIds()) : new HashSet<>());
+        }
+        long version = permissionVersionService.lock();
+        Map<Long, Set<Long>> current = currentAssignments(target.keySet());
+        return apply(version, target, current);
+    }
+
+    // 为角色追加权限，已有的权限不变
+    public Result grant(Long roleId, Set<Long> permissionIds) {
+        long version = permissionVersionService.lock();
+        Map<Long, Set<Long>> current = currentAssignments(Set.of(roleId));
+        Set<Long> target = new HashSet<>(current.get(roleId));
+        if (permissionIds != null) {
+            target.addAll(permissionIds);
+        }
+        return apply(version, Map.of(roleId, target), current);
+    }
+
+    // 从角色移除权限，未分配的权限忽略
+    public Result revoke(Long roleId, Set<Long> permissionIds) {
+        long version = permissionVersionService.lock();
+        Map<Long, Set<Long>> current = currentAssignments(Set.of(roleId));
+        Set<Long> target = new HashSet<>(current.get(roleId));
+        if (permissionIds != null) {
+            target.removeAll(permissionIds);
+        }
+        return apply(version, Map.of(roleId, target), current);
+    }
+
+    // 涉及角色的现有分配，角色不存在时报错
+    private Map<Long, Set<Long>> currentAssignments(Set<Long> roleIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource("roleIds", roleIds);
+        Set<Long> missing = new TreeSet<>(roleIds);
+        missing.removeAll(jdbcTemplate.queryForList(EXISTING_ROLES_SQL, new MapSqlParameterSource("ids", roleIds), Long.class));
+        if (!missing.isEmpty()) {
+            throw new RuntimeException("角色不存在: " + missing);
+        }
+
+        Map<Long, Set<Long>> current = new HashMap<>();
+        for (Long roleId : roleIds) {
+            current.put(roleId, new HashSet<>());
+        }
+        jdbcTemplate.query(CURRENT_SQL, params, rs -> {
+            current.get(rs.getLong("role_id")).add(rs.getLong("permission_id"));
+        });
+        return current;
+    }
+
+    private Result apply(long lockedVersion, Map<Long, Set<Long>> target, Map<Long, Set<Long>> current) {
+        List<SqlParameterSource> inserts = new ArrayList<>();
+        List<SqlParameterSource> deletes = new ArrayList<>();
+        Set<Long> grantedPermissionIds = new HashSet<>();
+        List<Long> changedRoleIds = new ArrayList<>();
+        for (Map.Entry<Long, Set<Long>> entry : target.entrySet()) {
+            Long roleId = entry.getKey();
+            Set<Long> existing = current.get(roleId);
+            int before = inserts.size() + deletes.size();
+            for (Long permissionId : entry.getValue()) {
+                if (!existing.contains(permissionId)) {
+                    inserts.add(assignment(roleId, permissionId));
+                    grantedPermissionIds.add(permissionId);
+                }
+            }
+            for (Long permissionId : existing) {
+                if (!entry.getValue().contains(permissionId)) {
+                    deletes.add(assignment(roleId, permissionId));
+                }
+            }
+            if (inserts.size() + deletes.size() > before) {
+                changedRoleIds.add(roleId);
+            }
+        }
+
+        if (!grantedPermissionIds.isEmpty()) {
+            Set<Long> missing = new TreeSet<>(grantedPermissionIds);
+            missing.removeAll(jdbcTemplate.queryForList(EXISTING_PERMISSIONS_SQL,
+                    new MapSqlParameterSource("ids", grantedPermissionIds), Long.class));
+            if (!missing.isEmpty()) {
+                throw new RuntimeException("权限不存在: " + missing);
+            }
+        }
+
+        evictAfterCompletion(changedRoleIds);
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_SQL, deletes.toArray(new SqlParameterSource[0]));
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts.toArray(new SqlParameterSource[0]));
+        }
+        if (changedRoleIds.isEmpty()) {
+            return new Result(lockedVersion, 0, 0);
+        }
+        long version = permissionVersionService.increment();
+        eventPublisher.publishEvent(new RoleChangedEvent(changedRoleIds));
+        return new Result(version, inserts.size(), deletes.size());
+    }
+
+    // 事务中同一角色的集合可能被重新加载进缓存（如RoleService返回角色时），所以在事务结束后清除
+    private void evictAfterCompletion(List<Long> roleIds) {
+        if (roleIds.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                roleIds.forEach(roleId -> secondLevelCache.evictCollectionData(PERMISSIONS_COLLECTION, roleId));
+            }
+        });
+    }
+
+    private static SqlParameterSource assignment(Long roleId, Long permissionId) {
+        return new MapSqlParameterSource()
+                .addValue("roleId", roleId)
+                .addValue("permissionId", permissionId);
+    }
+}
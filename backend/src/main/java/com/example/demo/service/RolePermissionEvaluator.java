@@ -0,0 +1,163 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Permission;
+import com.example.demo.entity.Role;
+import com.example.demo.repository.PermissionRepository;
+import com.example.demo.repository.RoleRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 细粒度权限检查，在方法注解中使用：@PreAuthorize("@rbac.hasPermission('user:export')")。
+// 每个启用的权限分配一个连续的位序号，每个启用的角色预先算好long[]位集，键为ROLE_加角色代码（与用户的GrantedAuthority一致）；
+// 检查时查一次位序号、一次角色位集，不访问数据库。本实例的角色或权限变更提交后立即整体重建并替换快照，检查线程不加锁；
+// 快照记录构建时的权限版本号，后台线程按rbac.refresh-interval-ms比较库中的版本号，
+// 其他实例的变更（版本号已递增）最迟在一个检查间隔后重建生效
+@Service("rbac")
+public class RolePermissionEvaluator {
+
+    private static final Logger log = LoggerFactory.getLogger(RolePermissionEvaluator.class);
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    // 未加载的快照的版本号，与库中任何版本都不相等
+    private static final long UNLOADED = -1L;
+
+    private static final class Snapshot {
+        // 构建时的权限版本号
+        final long version;
+        // 权限代码 -> 位序号
+        final Map<String, Integer> bits;
+        // ROLE_角色代码 -> 位集
+        final Map<String, long[]> roles;
+
+        Snapshot(long version, Map<String, Integer> bits, Map<String, long[]> roles) {
+            this.version = version;
+            this.bits = bits;
+            this.roles = roles;
+        }
+    }
+
+    private final RoleRepository roleRepository;
+    private final PermissionRepository permissionRepository;
+    private final PermissionVersionService permissionVersionService;
+    private final ScheduledExecutorService scheduler;
+
+    // 未加载前拒绝所有检查
+    private volatile Snapshot snapshot = new Snapshot(UNLOADED, Map.of(), Map.of());
+
+    public RolePermissionEvaluator(RoleRepository roleRepository,
+                                   PermissionRepository permissionRepository,
+                                   PermissionVersionService permissionVersionService,
+                                   @Value("${rbac.refresh-interval-ms:2000}") long refreshIntervalMillis) {
+        this.roleRepository = roleRepository;
+        this.permissionRepository = permissionRepository;
+        this.permissionVersionService = permissionVersionService;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rbac-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshIfStale, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // 当前请求的用户是否拥有该权限；未知或已禁用的权限代码一律拒绝
+    public boolean hasPermission(String code) {
+        return hasPermission(SecurityContextHolder.getContext().getAuthentication(), code);
+    }
+
+    public boolean hasPermission(Authentication authentication, String code) {
+        if (authentication == null || code == null) {
+            return false;
+        }
+        Snapshot current = snapshot;
+        Integer bit = current.bits.get(code);
+        if (bit == null) {
+            return false;
+        }
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            long[] granted = current.roles.get(authority.getAuthority());
+            if (granted != null && (granted[bit >>> 6] & (1L << bit)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    // 角色权限分配、权限启停等变更提交后重建
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onRoleChanged(RoleChangedEvent event) {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onPermissionChanged(PermissionChangedEvent event) {
+        rebuild();
+    }
+
+    // 库中的权限版本号与快照不一致时重建（其他实例的变更）；只读一行，检查失败时保留现有快照，下次再试
+    void refreshIfStale() {
+        try {
+            if (permissionVersionService.current() != snapshot.version) {
+                rebuild();
+            }
+        } catch (RuntimeException e) {
+            log.warn("权限位集刷新失败: {}", e.getMessage());
+        }
+    }
+
+    // 串行重建，避免较早开始的重建覆盖较新的快照。
+    // 先读版本号再读权限：与写操作并发时快照的版本号只会落后于内容，下次检查时再重建一次，不会出现新版本号配旧内容
+    private synchronized void rebuild() {
+        long version = permissionVersionService.current();
+        List<Permission> permissions = permissionRepository.findByStatusOrderByModuleAscSortOrderAsc(Permission.PermissionStatus.ACTIVE);
+        Map<String, Integer> bits = new HashMap<>();
+        for (Permission permission : permissions) {
+            bits.put(permission.getCode(), bits.size());
+        }
+
+        int words = Math.max(1, (bits.size() + 63) >>> 6);
+        Map<String, long[]> roles = new HashMap<>();
+        for (Object[] assignment : roleRepository.findAssignedCodes(Role.RoleStatus.ACTIVE, Permission.PermissionStatus.ACTIVE)) {
+            Integer bit = bits.get((String) assignment[1]);
+            if (bit == null) {
+                continue;
+            }
+            long[] granted = roles.computeIfAbsent(ROLE_PREFIX + assignment[0], role -> new long[words]);
+            granted[bit >>> 6] |= 1L << bit;
+        }
+
+        snapshot = new Snapshot(version, Map.copyOf(bits), Map.copyOf(roles));
+        log.debug("权限位集已重建：版本{}，权限{}个，角色{}个", version, bits.size(), roles.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -1,16 +1,30 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CountedPage;
+import com.example.demo.dto.RolePermissionChangeRequest;
 import com.example.demo.entity.Role;
 import com.example.demo.entity.Permission;
+import com.example.demo.repository.FilterSpecification;
+import com.example.demo.repository.ListFields;
 import com.example.demo.repository.RoleRepository;
-import com.example.demo.repository.PermissionRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.util.KeysetCursorCodec;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -22,7 +36,34 @@ public class RoleService {
     private RoleRepository roleRepository;
     
     @Autowired
-    private PermissionRepository permissionRepository;
+    private UserRepository userRepository;
+    
+    @Autowired
+    private KeysetCursorCodec keysetCursorCodec;
+    
+    @Autowired
+    private ListCountService listCountService;
+    
+    @Autowired
+    private ListProjectionService listProjectionService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private RolePermissionChangeService rolePermissionChangeService;
+    
+    @Autowired
+    private PermissionVersionService permissionVersionService;
+    
+    // 列表接口可返回的字段，permissionCount为角色拥有的权限数；默认只返回摘要字段
+    private static final ListFields<Role> LIST_FIELDS = ListFields.<Role>of(
+            "id", "name", "code", "description", "status", "sortOrder", "createdAt", "updatedAt")
+        .derived("permissionCount", (root, cb) -> cb.size(root.<Collection<?>>get("permissions")))
+        .defaults("id", "name", "code", "status");
+    
+    // 游标分页允许的排序字段（必须非空）
+    private static final Set<String> KEYSET_SORT_FIELDS = Set.of("id", "name", "code", "createdAt");
     
     // 分页获取所有角色
     public Page<Role> getAllRoles(Pageable pageable) {
@@ -31,40 +72,36 @@ public class RoleService {
     
     // 搜索角色
     public Page<Role> searchRoles(String search, Pageable pageable) {
-        return roleRepository.findByNameContainingOrCodeContaining(search, search, pageable);
+        return searchRolesWithFilters(search, null, pageable);
     }
     
-    // 带过滤条件的搜索角色
+    // 带过滤条件的搜索角色，search以*结尾时按前缀匹配
     public Page<Role> searchRolesWithFilters(String search, String status, Pageable pageable) {
-        Role.RoleStatus roleStatus = null;
-        
-        // 解析状态参数
-        if (status != null && !status.trim().isEmpty()) {
-            try {
-                roleStatus = Role.RoleStatus.valueOf(status.toUpperCase());
-            } catch (IllegalArgumentException e) {
-                // 忽略无效的状态值
-            }
-        }
-        
-        // 根据不同的过滤条件组合调用相应的查询方法
-        boolean hasSearch = search != null && !search.trim().isEmpty();
-        boolean hasStatus = roleStatus != null;
-        
-        if (hasSearch && hasStatus) {
-            // 搜索文本 + 状态
-            return roleRepository.findByStatusAndNameContainingOrStatusAndCodeContaining(
-                roleStatus, search, roleStatus, search, pageable);
-        } else if (hasSearch) {
-            // 仅搜索文本
-            return roleRepository.findByNameContainingOrCodeContaining(search, search, pageable);
-        } else if (hasStatus) {
-            // 仅状态
-            return roleRepository.findByStatus(roleStatus, pageable);
-        } else {
-            // 无过滤条件，返回所有角色
-            return roleRepository.findAll(pageable);
-        }
+        return roleRepository.findAll(roleFilter(search, status), pageable);
+    }
+    
+    // 分页列表（投影）：只查询fields指定的列，不加载实体；总数按countMode统计
+    public CountedPage<Map<String, Object>> listRoles(String search, String status, String fields,
+                                                      Pageable pageable, ListCountService.Mode countMode) {
+        return listProjectionService.page(Role.class, roleRepository, roleFilter(search, status), LIST_FIELDS, fields, pageable, countMode);
+    }
+    
+    // 游标分页：按排序字段和ID定位下一页，不使用OFFSET也不统计总数；after为空时从第一条开始
+    public Window<Map<String, Object>> scrollRoles(String search, String status, String fields,
+                                                   Sort sort, String after, int size) {
+        KeysetScrollPosition position = keysetCursorCodec.decode(after, sort, Role.class, KEYSET_SORT_FIELDS);
+        return listProjectionService.scroll(Role.class, roleFilter(search, status), LIST_FIELDS, fields, sort, position, size);
+    }
+    
+    // 统计符合过滤条件的角色数
+    public ListCountService.Result countRolesWithFilters(String search, String status, ListCountService.Mode countMode) {
+        return listCountService.count(Role.class, roleRepository, roleFilter(search, status), countMode);
+    }
+    
+    private FilterSpecification<Role> roleFilter(String search, String status) {
+        return FilterSpecification.<Role>create()
+            .equal("status", Role.RoleStatus.class, status)
+            .search(search, "name", "code");
     }
     
     // 根据ID查找角色
@@ -115,7 +152,12 @@ public class RoleService {
             role.setSortOrder(0);
         }
         
-        return roleRepository.save(role);
+        Role savedRole = roleRepository.save(role);
+        // 已有的同代码用户关联到新角色
+        userRepository.linkRole(savedRole.getId(), savedRole.getCode());
+        permissionVersionService.increment();
+        eventPublisher.publishEvent(RoleChangedEvent.of(savedRole.getId()));
+        return savedRole;
     }
     
     // 更新角色
@@ -126,6 +168,8 @@ public class RoleService {
         }
         
         Role existingRole = existingRoleOpt.get();
+        String previousCode = existingRole.getCode();
+        Role.RoleStatus previousStatus = existingRole.getStatus();
         
         // 检查角色名称和代码是否被其他角色使用
         Optional<Role> roleWithSameName = roleRepository.findByName(role.getName());
@@ -145,7 +189,18 @@ public class RoleService {
         existingRole.setStatus(role.getStatus());
         existingRole.setSortOrder(role.getSortOrder());
         
-        return roleRepository.save(existingRole);
+        Role savedRole = roleRepository.save(existingRole);
+        boolean codeChanged = !savedRole.getCode().equals(previousCode);
+        if (codeChanged) {
+            userRepository.unlinkRole(savedRole.getId(), savedRole.getCode());
+            userRepository.linkRole(savedRole.getId(), savedRole.getCode());
+        }
+        // 代码和状态决定权限位集，变更后各实例据版本号重建
+        if (codeChanged || savedRole.getStatus() != previousStatus) {
+            permissionVersionService.increment();
+        }
+        eventPublisher.publishEvent(codeChanged ? RoleChangedEvent.unlinking(savedRole.getId()) : RoleChangedEvent.of(savedRole.getId()));
+        return savedRole;
     }
     
     // 删除角色
@@ -154,11 +209,15 @@ public class RoleService {
             throw new RuntimeException("角色不存在");
         }
         roleRepository.deleteById(id);
+        permissionVersionService.increment();
+        eventPublisher.publishEvent(RoleChangedEvent.unlinking(id));
     }
     
     // 批量删除角色
     public void deleteRoles(List<Long> ids) {
         roleRepository.deleteAllById(ids);
+        permissionVersionService.increment();
+        eventPublisher.publishEvent(new RoleChangedEvent(ids, true));
     }
     
     // 更新角色状态
@@ -170,7 +229,10 @@ public class RoleService {
         
         Role role = roleOpt.get();
         role.setStatus(status);
-        return roleRepository.save(role);
+        Role savedRole = roleRepository.save(role);
+        permissionVersionService.increment();
+        eventPublisher.publishEvent(RoleChangedEvent.of(id));
+        return savedRole;
     }
     
     // 获取所有启用的角色
@@ -178,65 +240,57 @@ public class RoleService {
         return roleRepository.findByStatusOrderBySortOrderAsc(Role.RoleStatus.ACTIVE);
     }
     
-    // 为角色分配权限
+    // 为角色分配权限：只写入与现有分配的差异
     public Role assignPermissions(Long roleId, Set<Long> permissionIds) {
-        Optional<Role> roleOpt = roleRepository.findByIdWithPermissions(roleId);
-        if (!roleOpt.isPresent()) {
-            throw new RuntimeException("角色不存在");
-        }
-        
-        Role role = roleOpt.get();
-        
-        // 清空现有权限
-        role.getPermissions().clear();
-        
-        // 添加新权限
-        if (permissionIds != null && !permissionIds.isEmpty()) {
-            List<Permission> permissions = permissionRepository.findAllById(permissionIds);
-            role.getPermissions().addAll(permissions);
-        }
-        
-        return roleRepository.save(role);
+        rolePermissionChangeService.replace(List.of(new RolePermissionChangeRequest.RoleChange(roleId, permissionIds)));
+        return roleRepository.findByIdWithPermissions(roleId).orElseThrow(() -> new RuntimeException("角色不存在"));
     }
     
     // 为角色添加权限
     public Role addPermissions(Long roleId, Set<Long> permissionIds) {
-        Optional<Role> roleOpt = roleRepository.findByIdWithPermissions(roleId);
-        if (!roleOpt.isPresent()) {
-            throw new RuntimeException("角色不存在");
-        }
-        
-        Role role = roleOpt.get();
-        
-        // 添加新权限
-        if (permissionIds != null && !permissionIds.isEmpty()) {
-            List<Permission> permissions = permissionRepository.findAllById(permissionIds);
-            role.getPermissions().addAll(permissions);
-        }
-        
-        return roleRepository.save(role);
+        rolePermissionChangeService.grant(roleId, permissionIds);
+        return roleRepository.findByIdWithPermissions(roleId).orElseThrow(() -> new RuntimeException("角色不存在"));
     }
     
     // 为角色移除权限
     public Role removePermissions(Long roleId, Set<Long> permissionIds) {
-        Optional<Role> roleOpt = roleRepository.findByIdWithPermissions(roleId);
-        if (!roleOpt.isPresent()) {
-            throw new RuntimeException("角色不存在");
+        rolePermissionChangeService.revoke(roleId, permissionIds);
+        return roleRepository.findByIdWithPermissions(roleId).orElseThrow(() -> new RuntimeException("角色不存在"));
+    }
+    
+    // 批量修改多个角色的权限（角色×权限矩阵的一次编辑），在一个事务内完成，返回新的权限版本号
+    public RolePermissionChangeService.Result changePermissions(List<RolePermissionChangeRequest.RoleChange> changes) {
+        return rolePermissionChangeService.replace(changes);
+    }
+    
+    // 角色×权限矩阵：一条查询取角色，一条查询取对应关系，每个权限只返回一次，
+    // 角色只带权限ID，避免连接查询按权限数重复角色行
+    @Transactional(readOnly = true)
+    public Map<String, Object> getRolePermissionMatrix() {
+        List<Role> roles = roleRepository.findAll(Sort.by("sortOrder", "id"));
+        Map<Long, List<Long>> permissionIdsByRole = new HashMap<>();
+        Map<Long, Permission> permissions = new LinkedHashMap<>();
+        for (Object[] assignment : roleRepository.findPermissionAssignments()) {
+            Permission permission = (Permission) assignment[1];
+            permissionIdsByRole.computeIfAbsent((Long) assignment[0], id -> new ArrayList<>()).add(permission.getId());
+            permissions.putIfAbsent(permission.getId(), permission);
         }
         
-        Role role = roleOpt.get();
-        
-        // 移除权限
-        if (permissionIds != null && !permissionIds.isEmpty()) {
-            List<Permission> permissions = permissionRepository.findAllById(permissionIds);
-            role.getPermissions().removeAll(permissions);
+        List<Map<String, Object>> roleRows = new ArrayList<>(roles.size());
+        for (Role role : roles) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", role.getId());
+            row.put("name", role.getName());
+            row.put("code", role.getCode());
+            row.put("status", role.getStatus());
+            row.put("sortOrder", role.getSortOrder());
+            row.put("permissionIds", permissionIdsByRole.getOrDefault(role.getId(), List.of()));
+            roleRows.add(row);
         }
         
-        return roleRepository.save(role);
-    }
-    
-    // 获取所有角色及其权限
-    public List<Role> getAllRolesWithPermissions() {
-        return roleRepository.findAllWithPermissions();
+        Map<String, Object> matrix = new LinkedHashMap<>();
+        matrix.put("roles", roleRows);
+        matrix.put("permissions", new ArrayList<>(permissions.values()));
+        return matrix;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,208 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Permission;
+import com.example.demo.entity.Role;
+import com.example.demo.entity.User;
+import com.example.demo.repository.FilterSpecification;
+import com.example.demo.repository.ListFields;
+import com.example.demo.repository.PermissionRepository;
+import com.example.demo.repository.RoleRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.util.NgramIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// 管理后台全局联想搜索：用户（用户名、姓名、邮箱）、角色（名称、代码）、权限（名称、代码、模块）各有一个内存n-gram索引。
+// 应用启动完成后分批加载；之后各服务发布的变更事件在事务提交后按ID重新读取对应行，查不到的从索引移除。
+// 索引只反映本实例的写操作，多实例部署时其他实例的修改要到重启后才能搜到
+@Service
+public class SearchIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexService.class);
+
+    private static final int LOAD_BATCH_SIZE = 500;
+
+    public enum Type {
+        USERS,
+        ROLES,
+        PERMISSIONS;
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        // 逗号分隔的类型列表，空白时返回全部类型
+        public static Set<Type> parse(String value) {
+            Set<Type> types = new HashSet<>();
+            if (value == null || value.isBlank()) {
+                types.addAll(List.of(values()));
+                return types;
+            }
+            for (String name : value.split(",")) {
+                String trimmed = name.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                try {
+                    types.add(valueOf(trimmed.toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    throw new RuntimeException("不支持的搜索类型: " + trimmed + "，可选类型: users,roles,permissions");
+                }
+            }
+            return types;
+        }
+    }
+
+    // 各类型索引的字段（顺序即NgramIndex中的字段顺序）和权重
+    private static final String[] USER_FIELDS = {"username", "fullName", "email"};
+    private static final String[] ROLE_FIELDS = {"name", "code"};
+    private static final String[] PERMISSION_FIELDS = {"name", "code", "module"};
+
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final PermissionRepository permissionRepository;
+    private final ListProjectionService listProjectionService;
+
+    private final NgramIndex users = new NgramIndex(3, 3, 2);
+    private final NgramIndex roles = new NgramIndex(3, 2);
+    private final NgramIndex permissions = new NgramIndex(3, 2, 1);
+
+    public SearchIndexService(UserRepository userRepository,
+                              RoleRepository roleRepository,
+                              PermissionRepository permissionRepository,
+                              ListProjectionService listProjectionService) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.permissionRepository = permissionRepository;
+        this.listProjectionService = listProjectionService;
+    }
+
+    // 在初始化数据（CommandLineRunner）之后加载
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        load(User.class, users, USER_FIELDS);
+        load(Role.class, roles, ROLE_FIELDS);
+        load(Permission.class, permissions, PERMISSION_FIELDS);
+        log.info("搜索索引加载完成：用户{}，角色{}，权限{}，耗时{}ms", users.size(), roles.size(), permissions.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // 按ID顺序分批投影查询，只读取索引字段
+    private <T> void load(Class<T> entityType, NgramIndex index, String[] fields) {
+        index.clear();
+        ListFields<T> listFields = ListFields.of(fields);
+        String requested = String.join(",", fields);
+        KeysetScrollPosition position = ScrollPosition.keyset();
+        while (true) {
+            Window<Map<String, Object>> window = listProjectionService.scroll(entityType, FilterSpecification.create(),
+                    listFields, requested, Sort.by("id"), position, LOAD_BATCH_SIZE);
+            for (Map<String, Object> row : window) {
+                String[] values = new String[fields.length];
+                for (int i = 0; i < fields.length; i++) {
+                    values[i] = (String) row.get(fields[i]);
+                }
+                index.put((Long) row.get("id"), values);
+            }
+            if (!window.hasNext()) {
+                return;
+            }
+            position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+        }
+    }
+
+    // 按类型分别检索后合并，按得分从高到低返回最多limit条
+    public List<Map<String, Object>> search(String query, Set<Type> types, int limit) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Type type : Type.values()) {
+            if (!types.contains(type)) {
+                continue;
+            }
+            String[] fields = fields(type);
+            for (NgramIndex.Hit hit : index(type).search(query, limit)) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("type", type.key());
+                item.put("id", hit.getId());
+                for (int i = 0; i < fields.length; i++) {
+                    item.put(fields[i], hit.getValues().get(i));
+                }
+                item.put("score", hit.getScore());
+                results.add(item);
+            }
+        }
+        results.sort((a, b) -> Integer.compare((Integer) b.get("score"), (Integer) a.get("score")));
+        return results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results;
+    }
+
+    private NgramIndex index(Type type) {
+        return switch (type) {
+            case USERS -> users;
+            case ROLES -> roles;
+            case PERMISSIONS -> permissions;
+        };
+    }
+
+    private static String[] fields(Type type) {
+        return switch (type) {
+            case USERS -> USER_FIELDS;
+            case ROLES -> ROLE_FIELDS;
+            case PERMISSIONS -> PERMISSION_FIELDS;
+        };
+    }
+
+    // 事务提交后再更新索引，回滚的修改不会进入索引；UserService没有事务时立即执行
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onUserChanged(UserChangedEvent event) {
+        Set<Long> missing = new HashSet<>(event.getUserIds());
+        List<User> changed = new ArrayList<>(userRepository.findAllById(event.getUserIds()));
+        if (!event.getUsernames().isEmpty()) {
+            changed.addAll(userRepository.findByUsernameIn(event.getUsernames()));
+        }
+        for (User user : changed) {
+            missing.remove(user.getId());
+            users.put(user.getId(), user.getUsername(), user.getFullName(), user.getEmail());
+        }
+        missing.forEach(users::remove);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onRoleChanged(RoleChangedEvent event) {
+        Set<Long> missing = new HashSet<>(event.getRoleIds());
+        for (Role role : roleRepository.findAllById(event.getRoleIds())) {
+            missing.remove(role.getId());
+            roles.put(role.getId(), role.getName(), role.getCode());
+        }
+        missing.forEach(roles::remove);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onPermissionChanged(PermissionChangedEvent event) {
+        Set<Long> missing = new HashSet<>(event.getPermissionIds());
+        for (Permission permission : permissionRepository.findAllById(event.getPermissionIds())) {
+            missing.remove(permission.getId());
+            permissions.put(permission.getId(), permission.getName(), permission.getCode(), permission.getModule());
+        }
+        missing.forEach(permissions::remove);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.demo.service;
+
+// 集群共享的限流桶存储。桶容量为capacity，每个补充周期开始时整体补满；
+// 各节点按批租用令牌后在本地消费，请求路径上不访问共享存储
+public interface TokenLeaseStore {
+
+    // 从key对应的桶中取出至多requested个令牌
+    Lease lease(String key, long capacity, long refillPeriodMillis, long requested);
+
+    // 租用结果：实际取得的令牌数，以及距离本周期结束的毫秒数（租用的令牌在此之前有效）
+    final class Lease {
+
+        private final long granted;
+        private final long ttlMillis;
+
+        public Lease(long granted, long ttlMillis) {
+            this.granted = granted;
+            this.ttlMillis = ttlMillis;
+        }
+
+        public long getGranted() {
+            return granted;
+        }
+
+        public long getTtlMillis() {
+            return ttlMillis;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.demo.service;
+
+import com.example.demo.util.BloomFilter;
+import com.example.demo.util.JwtPrincipal;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// 令牌撤销：进程内布隆过滤器作为快速路径，绝大多数未撤销的令牌无需查询权威存储
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private final TokenRevocationStore store;
+    private final int expectedRevocations;
+    private final double falsePositiveRate;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private volatile BloomFilter bloomFilter;
+    // 重建期间新增的撤销先暂存，切换后补写到新过滤器，避免丢失
+    private volatile Queue<String> pendingDuringRebuild;
+
+    public TokenRevocationService(TokenRevocationStore store,
+                                  @Value("${jwt.revocation.expected-revocations:100000}") int expectedRevocations,
+                                  @Value("${jwt.revocation.false-positive-rate:0.001}") double falsePositiveRate,
+                                  @Value("${jwt.revocation.rebuild-interval-minutes:60}") long rebuildIntervalMinutes) {
+        this.store = store;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        this.bloomFilter = BloomFilter.create(expectedRevocations, falsePositiveRate);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-revocation-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        store.onRemoteRevocation(this::addToFilter);
+        rebuildFilter();
+
+        // 定期重建，清除已过期的撤销记录，防止过滤器饱和
+        scheduler.scheduleAtFixedRate(this::rebuildFilter, rebuildIntervalMinutes, rebuildIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    // 撤销令牌直到其过期
+    public void revoke(JwtPrincipal principal) {
+        String tokenId = principal.getTokenId();
+        if (tokenId == null || principal.isExpired(System.currentTimeMillis())) {
+            return;
+        }
+        store.revoke(tokenId, principal.getExpirationMillis());
+        addToFilter(tokenId);
+    }
+
+    // 布隆过滤器判定不存在时直接返回，只有可能命中时才查询权威存储
+    public boolean isRevoked(JwtPrincipal principal) {
+        String tokenId = principal.getTokenId();
+        if (tokenId == null || !bloomFilter.mightContain(tokenId)) {
+            return false;
+        }
+        try {
+            return store.isRevoked(tokenId);
+        } catch (RuntimeException e) {
+            // 存储不可用时对疑似撤销的令牌拒绝放行
+            logger.warn("撤销存储查询失败，按已撤销处理: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    private void addToFilter(String tokenId) {
+        Queue<String> pending = pendingDuringRebuild;
+        if (pending != null) {
+            pending.add(tokenId);
+        }
+        BloomFilter current = bloomFilter;
+        current.put(tokenId);
+        if (current.isSaturated() && rebuildScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::rebuildFilter);
+        }
+    }
+
+    private synchronized void rebuildFilter() {
+        Queue<String> pending = new ConcurrentLinkedQueue<>();
+        pendingDuringRebuild = pending;
+        try {
+            List<String> active = new ArrayList<>();
+            store.forEachActive(active::add);
+            BloomFilter next = BloomFilter.create(Math.max(expectedRevocations, active.size() * 2), falsePositiveRate);
+            active.forEach(next::put);
+            bloomFilter = next;
+        } catch (RuntimeException e) {
+            logger.warn("重建令牌撤销过滤器失败: {}", e.getMessage());
+        } finally {
+            pendingDuringRebuild = null;
+            rebuildScheduled.set(false);
+        }
+        pending.forEach(bloomFilter::put);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.service;
+
+import java.util.function.Consumer;
+
+// 令牌撤销记录的权威存储，按jti记录，到令牌exp时自动过期
+public interface TokenRevocationStore {
+
+    void revoke(String tokenId, long expiresAtMillis);
+
+    boolean isRevoked(String tokenId);
+
+    // 遍历仍未过期的撤销记录，用于重建布隆过滤器
+    void forEachActive(Consumer<String> consumer);
+
+    // 注册其他节点撤销令牌时的回调；单机存储无需通知
+    default void onRemoteRevocation(Consumer<String> listener) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// 按用户名和ID缓存用户快照，有容量和TTL上限；通过UserChangedEvent失效。
+// 失效只在本实例内进行，多实例部署时可能短暂读到旧数据，所以登录校验密码和状态时不走此缓存
+@Service
+public class UserCacheService {
+
+    private final UserRepository userRepository;
+    private final LoadingCache<String, Optional<UserSnapshot>> byUsername;
+    private final LoadingCache<Long, Optional<UserSnapshot>> byId;
+
+    public UserCacheService(UserRepository userRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${user.cache.max-size:10000}") long maxSize,
+                            @Value("${user.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.byUsername = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build(username -> userRepository.findByUsername(username).map(UserSnapshot::from));
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build(id -> userRepository.findById(id).map(UserSnapshot::from));
+        CaffeineCacheMetrics.monitor(meterRegistry, byUsername, "users.by-username");
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "users.by-id");
+    }
+
+    public Optional<UserSnapshot> findByUsername(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+        return byUsername.get(username);
+    }
+
+    public Optional<UserSnapshot> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return byId.get(id);
+    }
+
+    // 用户写操作完成后失效相关条目；只给出ID时按ID扫描用户名缓存
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        Set<Long> ids = new HashSet<>(event.getUserIds());
+        Collection<String> usernames = event.getUsernames();
+
+        byUsername.invalidateAll(usernames);
+        if (!ids.isEmpty()) {
+            byId.invalidateAll(ids);
+            byUsername.asMap().values().removeIf(snapshot -> snapshot.isPresent() && ids.contains(snapshot.get().getId()));
+        }
+        if (!usernames.isEmpty()) {
+            byId.asMap().values().removeIf(snapshot -> snapshot.isPresent() && usernames.contains(snapshot.get().getUsername()));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.service;
+
+import java.util.Collection;
+import java.util.List;
+
+// 用户数据变更事件，由UserService在写操作完成后发布，用于失效各类用户缓存
+public class UserChangedEvent {
+
+    private final Collection<Long> userIds;
+    private final Collection<String> usernames;
+
+    public UserChangedEvent(Collection<Long> userIds, Collection<String> usernames) {
+        this.userIds = userIds != null ? List.copyOf(userIds) : List.of();
+        this.usernames = usernames != null ? List.copyOf(usernames) : List.of();
+    }
+
+    public static UserChangedEvent ofIds(Collection<Long> userIds) {
+        return new UserChangedEvent(userIds, null);
+    }
+
+    public static UserChangedEvent ofUser(Long userId, String... usernames) {
+        return new UserChangedEvent(List.of(userId), List.of(usernames));
+    }
+
+    public static UserChangedEvent ofUsernames(Collection<String> usernames) {
+        return new UserChangedEvent(null, usernames);
+    }
+
+    public Collection<Long> getUserIds() {
+        return userIds;
+    }
+
+    public Collection<String> getUsernames() {
+        return usernames;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 用户安全版本的校验：版本保存在users.security_version，撤销性变更（改角色/状态/密码）与用户行在同一次写入中加一，
+// 删除的用户没有版本，其令牌一律失效。令牌签发时写入当前版本，认证时与库中版本比较。
+// 每个请求都要校验，这里按用户ID短时缓存库中的版本：本实例的变更通过UserChangedEvent立即失效，
+// 其他实例的变更最迟在缓存过期（security-version.ttl-seconds）后生效
+@Service
+public class UserSecurityVersionService {
+
+    private static final String VERSION_SQL = "SELECT security_version FROM users WHERE id = ?";
+
+    // 用户不存在时的版本，与任何令牌中的版本都不相等
+    private static final long MISSING = -1L;
+
+    private final LoadingCache<Long, Long> versions;
+
+    public UserSecurityVersionService(JdbcTemplate jdbcTemplate,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${user.security-version.max-size:10000}") long maxSize,
+                                      @Value("${user.security-version.ttl-seconds:5}") long ttlSeconds) {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build(userId -> {
+                    List<Long> rows = jdbcTemplate.queryForList(VERSION_SQL, Long.class, userId);
+                    return rows.isEmpty() ? MISSING : rows.get(0);
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "users.security-version");
+    }
+
+    // 获取用户当前的安全版本
+    public long currentVersion(Long userId) {
+        if (userId == null) {
+            return MISSING;
+        }
+        return versions.get(userId);
+    }
+
+    // 令牌中的版本是否仍然有效
+    public boolean isCurrent(Long userId, long tokenVersion) {
+        long current = currentVersion(userId);
+        return current != MISSING && current == tokenVersion;
+    }
+
+    // 用户写操作完成后失效；只给出用户名的事件来自新建用户，不影响已有版本
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        versions.invalidateAll(event.getUserIds());
+    }
+}
@@ -1,22 +1,34 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CountedPage;
+import com.example.demo.entity.Role;
 import com.example.demo.entity.User;
+import com.example.demo.repository.FilterSpecification;
+import com.example.demo.repository.ListFields;
+import com.example.demo.repository.RoleRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.util.KeysetCursorCodec;
+import com.example.demo.util.SessionPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class UserService implements UserDetailsService {
@@ -25,16 +37,55 @@ public class UserService implements UserDetailsService {
     private UserRepository userRepository;
     
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private RoleRepository roleRepository;
     
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+    
+    @Autowired
+    private LastLoginRecorder lastLoginRecorder;
+    
+    @Autowired
+    private UserCacheService userCacheService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private KeysetCursorCodec keysetCursorCodec;
+    
+    @Autowired
+    private ListCountService listCountService;
+    
+    @Autowired
+    private ListProjectionService listProjectionService;
+    
+    // 列表接口可返回的字段（不含密码），默认只返回摘要字段
+    private static final ListFields<User> LIST_FIELDS = ListFields.<User>of(
+            "id", "username", "email", "fullName", "phone", "department", "position",
+            "role", "status", "createdAt", "updatedAt", "lastLogin")
+        .defaults("id", "username", "fullName", "email", "role", "status");
+    
+    // 游标分页允许的排序字段（必须非空）
+    private static final Set<String> KEYSET_SORT_FIELDS = Set.of("id", "username", "createdAt");
+    
+    // UserDetailsService供Spring Security校验密码使用，直接读库，不使用快照缓存
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        Optional<User> userOpt = userRepository.findByUsername(username);
+        Optional<UserSnapshot> userOpt = findCredentials(username);
         if (!userOpt.isPresent()) {
             throw new UsernameNotFoundException("用户不存在: " + username);
         }
         
-        User user = userOpt.get();
+        return buildUserDetails(userOpt.get());
+    }
+    
+    // 由已加载的用户实体构建UserDetails，避免再次查询
+    public UserDetails buildUserDetails(User user) {
+        return buildUserDetails(UserSnapshot.from(user));
+    }
+    
+    public UserDetails buildUserDetails(UserSnapshot user) {
         return org.springframework.security.core.userdetails.User.builder()
                 .username(user.getUsername())
                 .password(user.getPassword())
@@ -46,11 +97,84 @@ public class UserService implements UserDetailsService {
                 .build();
     }
     
+    // 构建写入会话的认证主体；权限和安全版本取自同一快照，快照过期时版本也随之过期，会话不会带着旧权限生效
+    public SessionPrincipal buildSessionPrincipal(UserSnapshot user) {
+        return new SessionPrincipal(
+                user.getId(),
+                user.getUsername(),
+                Collections.singletonList("ROLE_" + user.getRole().name()),
+                user.getSecurityVersion());
+    }
+    
+    // 登录结果
+    public static class LoginResult {
+        
+        public enum Status {
+            SUCCESS,
+            BAD_CREDENTIALS,
+            DISABLED
+        }
+        
+        private final Status status;
+        private final UserSnapshot user;
+        private final UserDetails userDetails;
+        
+        private LoginResult(Status status, UserSnapshot user, UserDetails userDetails) {
+            this.status = status;
+            this.user = user;
+            this.userDetails = userDetails;
+        }
+        
+        public Status getStatus() {
+            return status;
+        }
+        
+        public boolean isSuccess() {
+            return status == Status.SUCCESS;
+        }
+        
+        public UserSnapshot getUser() {
+            return user;
+        }
+        
+        public UserDetails getUserDetails() {
+            return userDetails;
+        }
+    }
+    
+    // 登录：只查询一次用户，校验密码和状态，并记录登录时间。
+    // 密码哈希和状态直接读库，不使用快照缓存：其他实例修改密码或禁用用户后，本实例缓存中的旧哈希不能再用于登录
+    public LoginResult login(String username, String password) {
+        Optional<UserSnapshot> userOpt = findCredentials(username);
+        if (userOpt.isEmpty() || !passwordHashingService.matches(password, userOpt.get().getPassword())) {
+            return new LoginResult(LoginResult.Status.BAD_CREDENTIALS, null, null);
+        }
+        
+        UserSnapshot user = userOpt.get();
+        if (user.getStatus() != User.UserStatus.ACTIVE) {
+            return new LoginResult(LoginResult.Status.DISABLED, user, null);
+        }
+        
+        // 登录时间异步合并写入，不占用登录请求的事务
+        LocalDateTime now = LocalDateTime.now();
+        lastLoginRecorder.record(user.getId(), now);
+        
+        return new LoginResult(LoginResult.Status.SUCCESS, user, buildUserDetails(user));
+    }
+    
+    // 读取校验凭据用的最新用户数据
+    private Optional<UserSnapshot> findCredentials(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+        return userRepository.findByUsername(username).map(UserSnapshot::from);
+    }
+    
     public boolean authenticate(String username, String password) {
         Optional<User> userOpt = userRepository.findByUsername(username);
         if (userOpt.isPresent()) {
             User user = userOpt.get();
-            return passwordEncoder.matches(password, user.getPassword());
+            return passwordHashingService.matches(password, user.getPassword());
         }
         return false;
     }
@@ -59,13 +183,21 @@ public class UserService implements UserDetailsService {
         return userRepository.findByUsername(username);
     }
     
+    // 从缓存获取用户快照，用于当前用户信息等高频只读路径，不用于校验密码
+    public Optional<UserSnapshot> findSnapshotByUsername(String username) {
+        return userCacheService.findByUsername(username);
+    }
+    
     public User createUser(String username, String password, String email, String fullName) {
         User user = new User();
         user.setUsername(username);
-        user.setPassword(passwordEncoder.encode(password));
+        user.setPassword(passwordHashingService.encode(password));
         user.setEmail(email);
         user.setFullName(fullName);
-        return userRepository.save(user);
+        linkRole(user);
+        User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(UserChangedEvent.ofUser(savedUser.getId(), savedUser.getUsername()));
+        return savedUser;
     }
     
     public boolean existsByUsername(String username) {
@@ -83,76 +215,37 @@ public class UserService implements UserDetailsService {
     
     // 搜索用户
     public Page<User> searchUsers(String search, Pageable pageable) {
-        return userRepository.findByUsernameContainingOrFullNameContainingOrEmailContaining(
-            search, search, search, pageable);
+        return searchUsersWithFilters(search, null, null, pageable);
     }
     
-    // 带过滤条件的搜索用户
+    // 带过滤条件的搜索用户，search以*结尾时按前缀匹配
     public Page<User> searchUsersWithFilters(String search, String status, String role, Pageable pageable) {
-        User.UserStatus userStatus = null;
-        User.UserRole userRole = null;
-        
-        // 解析状态参数
-        if (status != null && !status.trim().isEmpty()) {
-            try {
-                userStatus = User.UserStatus.valueOf(status.toUpperCase());
-            } catch (IllegalArgumentException e) {
-                // 忽略无效的状态值
-            }
-        }
-        
-        // 解析角色参数
-        if (role != null && !role.trim().isEmpty()) {
-            try {
-                userRole = User.UserRole.valueOf(role.toUpperCase());
-            } catch (IllegalArgumentException e) {
-                // 忽略无效的角色值
-            }
-        }
-        
-        // 根据不同的过滤条件组合调用相应的查询方法
-        boolean hasSearch = search != null && !search.trim().isEmpty();
-        boolean hasStatus = userStatus != null;
-        boolean hasRole = userRole != null;
-        
-        if (hasSearch && hasStatus && hasRole) {
-            // 搜索文本 + 状态 + 角色
-            return userRepository.findByStatusAndRoleAndUsernameContainingOrStatusAndRoleAndFullNameContainingOrStatusAndRoleAndEmailContaining(
-                userStatus, userRole, search,
-                userStatus, userRole, search,
-                userStatus, userRole, search,
-                pageable);
-        } else if (hasSearch && hasStatus) {
-            // 搜索文本 + 状态
-            return userRepository.findByStatusAndUsernameContainingOrStatusAndFullNameContainingOrStatusAndEmailContaining(
-                userStatus, search,
-                userStatus, search,
-                userStatus, search,
-                pageable);
-        } else if (hasSearch && hasRole) {
-            // 搜索文本 + 角色
-            return userRepository.findByRoleAndUsernameContainingOrRoleAndFullNameContainingOrRoleAndEmailContaining(
-                userRole, search,
-                userRole, search,
-                userRole, search,
-                pageable);
-        } else if (hasStatus && hasRole) {
-            // 状态 + 角色
-            return userRepository.findByStatusAndRole(userStatus, userRole, pageable);
-        } else if (hasSearch) {
-            // 仅搜索文本
-            return userRepository.findByUsernameContainingOrFullNameContainingOrEmailContaining(
-                search, search, search, pageable);
-        } else if (hasStatus) {
-            // 仅状态
-            return userRepository.findByStatus(userStatus, pageable);
-        } else if (hasRole) {
-            // 仅角色
-            return userRepository.findByRole(userRole, pageable);
-        } else {
-            // 无过滤条件，返回所有用户
-            return userRepository.findAll(pageable);
-        }
+        return userRepository.findAll(userFilter(search, status, role), pageable);
+    }
+    
+    // 分页列表（投影）：只查询fields指定的列，不加载实体；总数按countMode统计
+    public CountedPage<Map<String, Object>> listUsers(String search, String status, String role, String fields,
+                                                      Pageable pageable, ListCountService.Mode countMode) {
+        return listProjectionService.page(User.class, userRepository, userFilter(search, status, role), LIST_FIELDS, fields, pageable, countMode);
+    }
+    
+    // 游标分页：按排序字段和ID定位下一页，不使用OFFSET也不统计总数；after为空时从第一条开始
+    public Window<Map<String, Object>> scrollUsers(String search, String status, String role, String fields,
+                                                   Sort sort, String after, int size) {
+        KeysetScrollPosition position = keysetCursorCodec.decode(after, sort, User.class, KEYSET_SORT_FIELDS);
+        return listProjectionService.scroll(User.class, userFilter(search, status, role), LIST_FIELDS, fields, sort, position, size);
+    }
+    
+    // 统计符合过滤条件的用户数
+    public ListCountService.Result countUsersWithFilters(String search, String status, String role, ListCountService.Mode countMode) {
+        return listCountService.count(User.class, userRepository, userFilter(search, status, role), countMode);
+    }
+    
+    private FilterSpecification<User> userFilter(String search, String status, String role) {
+        return FilterSpecification.<User>create()
+            .equal("status", User.UserStatus.class, status)
+            .equal("role", User.UserRole.class, role)
+            .search(search, "username", "fullName", "email");
     }
     
     // 根据ID查找用户
@@ -171,7 +264,7 @@ public class UserService implements UserDetailsService {
         }
         
         // 加密密码
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
+        user.setPassword(passwordHashingService.encode(user.getPassword()));
         
         // 设置默认值
         if (user.getRole() == null) {
@@ -180,8 +273,11 @@ public class UserService implements UserDetailsService {
         if (user.getStatus() == null) {
             user.setStatus(User.UserStatus.ACTIVE);
         }
+        linkRole(user);
         
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(UserChangedEvent.ofUser(savedUser.getId(), savedUser.getUsername()));
+        return savedUser;
     }
     
     // 更新用户
@@ -192,6 +288,12 @@ public class UserService implements UserDetailsService {
         }
         
         User existingUser = existingUserOpt.get();
+        String previousUsername = existingUser.getUsername();
+        
+        // 用户名、角色或状态变化会使已签发的令牌失效
+        boolean revoking = !existingUser.getUsername().equals(user.getUsername())
+                || existingUser.getRole() != user.getRole()
+                || existingUser.getStatus() != user.getStatus();
         
         // 检查用户名和邮箱是否被其他用户使用
         Optional<User> userWithSameUsername = userRepository.findByUsername(user.getUsername());
@@ -213,8 +315,20 @@ public class UserService implements UserDetailsService {
         existingUser.setPosition(user.getPosition());
         existingUser.setRole(user.getRole());
         existingUser.setStatus(user.getStatus());
+        linkRole(existingUser);
+        if (revoking) {
+            existingUser.setSecurityVersion(existingUser.getSecurityVersion() + 1);
+        }
         
-        return userRepository.save(existingUser);
+        User savedUser = userRepository.save(existingUser);
+        eventPublisher.publishEvent(UserChangedEvent.ofUser(savedUser.getId(), previousUsername, savedUser.getUsername()));
+        return savedUser;
+    }
+    
+    // 按角色代码关联角色实体，没有对应角色时不关联
+    private void linkRole(User user) {
+        user.setRoleId(user.getRole() == null ? null
+            : roleRepository.findByCode(user.getRole().name()).map(Role::getId).orElse(null));
     }
     
     // 删除用户
@@ -223,11 +337,13 @@ public class UserService implements UserDetailsService {
             throw new RuntimeException("用户不存在");
         }
         userRepository.deleteById(id);
+        eventPublisher.publishEvent(UserChangedEvent.ofIds(List.of(id)));
     }
     
     // 批量删除用户
     public void deleteUsers(List<Long> ids) {
         userRepository.deleteAllById(ids);
+        eventPublisher.publishEvent(UserChangedEvent.ofIds(ids));
     }
     
     // 更新用户状态
@@ -239,7 +355,10 @@ public class UserService implements UserDetailsService {
         
         User user = userOpt.get();
         user.setStatus(status);
-        return userRepository.save(user);
+        user.setSecurityVersion(user.getSecurityVersion() + 1);
+        User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(UserChangedEvent.ofUser(id, savedUser.getUsername()));
+        return savedUser;
     }
     
     // 重置密码
@@ -250,18 +369,10 @@ public class UserService implements UserDetailsService {
         }
         
         User user = userOpt.get();
-        user.setPassword(passwordEncoder.encode(newPassword));
+        user.setPassword(passwordHashingService.encode(newPassword));
+        user.setSecurityVersion(user.getSecurityVersion() + 1);
         userRepository.save(user);
-    }
-    
-    // 更新最后登录时间
-    public void updateLastLogin(String username) {
-        Optional<User> userOpt = userRepository.findByUsername(username);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            user.setLastLogin(LocalDateTime.now());
-            userRepository.save(user);
-        }
+        eventPublisher.publishEvent(UserChangedEvent.ofUser(id, user.getUsername()));
     }
     
     // 批量导入用户
@@ -301,10 +412,14 @@ public class UserService implements UserDetailsService {
                 }
                 
                 // 加密密码
-                user.setPassword(passwordEncoder.encode(user.getPassword()));
+                user.setPassword(passwordHashingService.encode(user.getPassword()));
+                linkRole(user);
                 
                 validUsers.add(user);
                 
+            } catch (PasswordHashingBusyException e) {
+                // 哈希线程池已满时中止整个导入，由控制器返回503
+                throw e;
             } catch (Exception e) {
                 errors.add("第" + rowNum + "行：数据格式错误 - " + e.getMessage());
             }
@@ -314,6 +429,8 @@ public class UserService implements UserDetailsService {
         if (!validUsers.isEmpty()) {
             try {
                 userRepository.saveAll(validUsers);
+                eventPublisher.publishEvent(UserChangedEvent.ofUsernames(
+                    validUsers.stream().map(User::getUsername).toList()));
             } catch (Exception e) {
                 errors.add("批量保存失败：" + e.getMessage());
             }
@@ -0,0 +1,75 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.User;
+
+// 用户的不可变快照，供认证相关路径缓存复用；不受JPA会话和脏检查影响
+public final class UserSnapshot {
+
+    private final Long id;
+    private final String username;
+    private final String password;
+    private final String email;
+    private final String fullName;
+    private final User.UserRole role;
+    private final User.UserStatus status;
+    private final long securityVersion;
+
+    private UserSnapshot(User user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.password = user.getPassword();
+        this.email = user.getEmail();
+        this.fullName = user.getFullName();
+        this.role = user.getRole();
+        this.status = user.getStatus();
+        this.securityVersion = user.getSecurityVersion();
+    }
+
+    public static UserSnapshot from(User user) {
+        return new UserSnapshot(user);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    // BCrypt哈希，仅用于登录校验
+    public String getPassword() {
+        return password;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public User.UserRole getRole() {
+        return role;
+    }
+
+    public User.UserStatus getStatus() {
+        return status;
+    }
+
+    // 加载快照时库中的安全版本
+    public long getSecurityVersion() {
+        return securityVersion;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSnapshot{" +
+                "id=" + id +
+                ", username='" + username + '\'' +
+                ", role=" + role +
+                ", status=" + status +
+                '}';
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.demo.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 基于延迟梯度的自适应并发上限（思路同Netflix Gradient2）：
+// 用长期平均延迟作为基线，短期延迟明显高于基线时按比例收缩上限，延迟正常时按sqrt(limit)逐步放大。
+// 准入按优先级取上限的不同比例，过载时低优先级请求先被拒绝
+public final class AdaptiveConcurrencyLimiter {
+
+    public enum Priority {
+        // 登录、刷新、当前用户等关键请求，可用满全部上限
+        CRITICAL(1.0),
+        NORMAL(0.9),
+        // 导出、导入等批量请求，最多占用一半
+        BULK(0.5);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+    }
+
+    // 每个采样窗口至少包含的样本数和时长
+    private static final int WINDOW_SAMPLES = 50;
+    private static final long WINDOW_NANOS = 100_000_000L;
+    // 长期基线的平滑系数（约100个窗口）以及上限变化的平滑系数
+    private static final double BASELINE_ALPHA = 0.01;
+    private static final double LIMIT_SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicLong[] rejected = new AtomicLong[Priority.values().length];
+    private volatile int limit;
+
+    // 当前窗口的样本，由updateLock保护计算，累加部分无锁
+    private final AtomicLong windowRttSum = new AtomicLong();
+    private final AtomicInteger windowCount = new AtomicInteger();
+    private final AtomicInteger windowMaxInflight = new AtomicInteger();
+    private volatile long windowStart = System.nanoTime();
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private double estimatedLimit;
+    private double baselineRtt;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.estimatedLimit = limit;
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new AtomicLong();
+        }
+    }
+
+    // 尝试占用一个并发名额，成功后必须调用release
+    public boolean tryAcquire(Priority priority) {
+        int threshold = Math.max(1, (int) (limit * priority.share));
+        while (true) {
+            int current = inflight.get();
+            if (current >= threshold) {
+                rejected[priority.ordinal()].incrementAndGet();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                windowMaxInflight.accumulateAndGet(current + 1, Math::max);
+                return true;
+            }
+        }
+    }
+
+    // 释放名额；rttNanos为负表示不计入延迟样本（如批量请求）
+    public void release(long rttNanos) {
+        inflight.decrementAndGet();
+        if (rttNanos < 0) {
+            return;
+        }
+
+        windowRttSum.addAndGet(rttNanos);
+        int count = windowCount.incrementAndGet();
+        long now = System.nanoTime();
+        if (count >= WINDOW_SAMPLES && now - windowStart >= WINDOW_NANOS && updateLock.tryLock()) {
+            try {
+                updateLimit(now);
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    private void updateLimit(long now) {
+        int count = windowCount.getAndSet(0);
+        long sum = windowRttSum.getAndSet(0);
+        int maxInflight = windowMaxInflight.getAndSet(0);
+        windowStart = now;
+        if (count == 0) {
+            return;
+        }
+
+        double shortRtt = (double) sum / count;
+        if (baselineRtt == 0) {
+            baselineRtt = shortRtt;
+        } else {
+            baselineRtt = baselineRtt * (1 - BASELINE_ALPHA) + shortRtt * BASELINE_ALPHA;
+            // 延迟快速回落时基线同步下调，避免长期停留在过载时的高位
+            if (baselineRtt / shortRtt > 2) {
+                baselineRtt = shortRtt * 2;
+            }
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineRtt / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        // 并发远未用满时不继续放大，防止空闲期间上限无限增长
+        if (maxInflight < estimatedLimit / 2) {
+            newLimit = Math.min(newLimit, estimatedLimit);
+        }
+        newLimit = estimatedLimit * (1 - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public long getRejected(Priority priority) {
+        return rejected[priority.ordinal()].get();
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.demo.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+// 客户端IP解析为128位键（高64位、低64位），全程不分配对象。
+// IPv4映射为 ::ffff:a.b.c.d，与对应的IPv4映射IPv6地址得到相同的键；
+// 无法解析的值（伪造的X-Forwarded-For等）按字符串哈希，放在丢弃前缀100::/64下。
+// 0100::/8至0300::/8是IETF保留地址，不会是真实客户端，文本中出现时也按无法解析处理，
+// 这段空间留给其他类型的键（如按用户计数的限流键），不会被伪造的IP撞上
+public final class ClientAddress {
+
+    private static final long IPV4_MAPPED_PREFIX = 0x0000_FFFF_0000_0000L;
+    private static final long UNPARSED_HIGH = 0x0100_0000_0000_0000L;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ClientAddress() {
+    }
+
+    // 解析请求的客户端地址：依次取X-Forwarded-For的第一个地址、X-Real-IP、连接地址，不拆分字符串
+    public static void parse(HttpServletRequest request, long[] key) {
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            int comma = xForwardedFor.indexOf(',');
+            parse(xForwardedFor, 0, comma >= 0 ? comma : xForwardedFor.length(), key);
+            return;
+        }
+        String xRealIp = request.getHeader("X-Real-IP");
+        if (xRealIp != null && !xRealIp.isEmpty()) {
+            parse(xRealIp, key);
+            return;
+        }
+        parse(request.getRemoteAddr(), key);
+    }
+
+    // 解析结果写入key[0]（高位）和key[1]（低位）
+    public static void parse(String address, long[] key) {
+        parse(address, 0, address != null ? address.length() : 0, key);
+    }
+
+    private static void parse(String address, int from, int to, long[] key) {
+        while (from < to && address.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && address.charAt(to - 1) <= ' ') {
+            to--;
+        }
+
+        // 去掉 [::1]:8080 形式的方括号和端口，以及 fe80::1%eth0 的区域标识
+        if (from < to && address.charAt(from) == '[') {
+            int close = address.indexOf(']', from);
+            if (close > from && close < to) {
+                to = close;
+            }
+            from++;
+        }
+        int zone = address != null ? address.indexOf('%', from) : -1;
+        if (zone >= 0 && zone < to) {
+            to = zone;
+        }
+
+        long ipv4 = parseIpv4(address, from, to);
+        if (ipv4 >= 0) {
+            key[0] = 0L;
+            key[1] = IPV4_MAPPED_PREFIX | ipv4;
+            return;
+        }
+        if (parseIpv6(address, from, to, key) && !isReserved(key[0])) {
+            return;
+        }
+
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = from; i < to; i++) {
+            hash ^= address.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        key[0] = UNPARSED_HIGH;
+        key[1] = hash;
+    }
+
+    public static boolean isReserved(long high) {
+        long topByte = high >>> 56;
+        return topByte >= 0x01 && topByte <= 0x03;
+    }
+
+    // 点分十进制IPv4，返回32位无符号值；格式不合法返回-1
+    private static long parseIpv4(String s, int from, int to) {
+        long value = 0;
+        int octets = 0;
+        int digits = 0;
+        int octet = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > 3) {
+                    return -1;
+                }
+                octet = octet * 10 + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.') {
+                if (digits == 0 || octets == 3) {
+                    return -1;
+                }
+                value = (value << 8) | octet;
+                octets++;
+                digits = 0;
+                octet = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (digits == 0 || octets != 3) {
+            return -1;
+        }
+        return (value << 8) | octet;
+    }
+
+    // RFC 4291文本格式，支持::压缩和末尾内嵌IPv4；"::"之前的组累加到key，之后的组累加到tail
+    private static boolean parseIpv6(String s, int from, int to, long[] key) {
+        if (to - from < 2) {
+            return false;
+        }
+
+        long headHigh = 0;
+        long headLow = 0;
+        long tailHigh = 0;
+        long tailLow = 0;
+        int headGroups = 0;
+        int tailGroups = 0;
+        boolean compressed = false;
+
+        int i = from;
+        if (s.charAt(i) == ':') {
+            if (s.charAt(i + 1) != ':') {
+                return false;
+            }
+            compressed = true;
+            i += 2;
+        }
+
+        while (i < to) {
+            int start = i;
+            int group = 0;
+            int digits = 0;
+            while (i < to) {
+                int hex = Character.digit(s.charAt(i), 16);
+                if (hex < 0) {
+                    break;
+                }
+                group = (group << 4) | hex;
+                digits++;
+                i++;
+            }
+
+            int groups;
+            long value;
+            if (i < to && s.charAt(i) == '.') {
+                // 末尾内嵌IPv4，占两个组
+                long ipv4 = parseIpv4(s, start, to);
+                if (ipv4 < 0) {
+                    return false;
+                }
+                groups = 2;
+                value = ipv4;
+                i = to;
+            } else {
+                if (digits == 0 || digits > 4) {
+                    return false;
+                }
+                groups = 1;
+                value = group;
+            }
+
+            int shift = 16 * groups;
+            if (compressed) {
+                tailHigh = (tailHigh << shift) | (tailLow >>> (64 - shift));
+                tailLow = (tailLow << shift) | value;
+                tailGroups += groups;
+            } else {
+                headHigh = (headHigh << shift) | (headLow >>> (64 - shift));
+                headLow = (headLow << shift) | value;
+                headGroups += groups;
+            }
+            if (headGroups + tailGroups > 8) {
+                return false;
+            }
+
+            if (i == to) {
+                break;
+            }
+            if (s.charAt(i) != ':') {
+                return false;
+            }
+            i++;
+            if (i < to && s.charAt(i) == ':') {
+                if (compressed) {
+                    return false;
+                }
+                compressed = true;
+                i++;
+            } else if (i == to) {
+                return false;
+            }
+        }
+
+        if (!compressed) {
+            if (headGroups != 8) {
+                return false;
+            }
+            key[0] = headHigh;
+            key[1] = headLow;
+            return true;
+        }
+        if (headGroups + tailGroups > 7) {
+            return false;
+        }
+
+        // 头部左移到高位，"::"省略的组补零
+        int shift = 16 * (8 - headGroups);
+        if (shift >= 128) {
+            headHigh = 0;
+            headLow = 0;
+        } else if (shift >= 64) {
+            headHigh = headLow << (shift - 64);
+            headLow = 0;
+        } else {
+            headHigh = (headHigh << shift) | (headLow >>> (64 - shift));
+            headLow = headLow << shift;
+        }
+        key[0] = headHigh | tailHigh;
+        key[1] = headLow | tailLow;
+        return true;
+    }
+}
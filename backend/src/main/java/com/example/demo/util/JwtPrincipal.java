@@ -0,0 +1,119 @@
+package com.example.demo.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 已验证JWT的不可变快照，解析一次后在过滤器和控制器之间复用
+public final class JwtPrincipal {
+
+    public static final String TYPE_ACCESS = "access";
+    public static final String TYPE_REFRESH = "refresh";
+
+    private final String tokenId;
+    private final String subject;
+    private final String type;
+    private final long issuedAtMillis;
+    private final long expirationMillis;
+    private final Map<String, Object> claims;
+    private final Long userId;
+    private final Long securityVersion;
+    private final List<String> authorities;
+
+    JwtPrincipal(String tokenId, String subject, String type, Date issuedAt, Date expiration, Map<String, Object> claims) {
+        this.tokenId = tokenId;
+        this.subject = subject;
+        this.type = type != null ? type : TYPE_ACCESS;
+        this.issuedAtMillis = issuedAt != null ? issuedAt.getTime() : 0L;
+        this.expirationMillis = expiration != null ? expiration.getTime() : Long.MAX_VALUE;
+        this.claims = Collections.unmodifiableMap(new LinkedHashMap<>(claims));
+        this.userId = toLong(claims.get(JwtUtil.CLAIM_USER_ID));
+        this.securityVersion = toLong(claims.get(JwtUtil.CLAIM_SECURITY_VERSION));
+        this.authorities = toStringList(claims.get(JwtUtil.CLAIM_AUTHORITIES));
+    }
+
+    private static Long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    private static List<String> toStringList(Object value) {
+        if (!(value instanceof List<?>)) {
+            return null;
+        }
+        List<String> result = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            if (item != null) {
+                result.add(item.toString());
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    // jti，旧版令牌没有时为null
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public boolean isRefreshToken() {
+        return TYPE_REFRESH.equals(type);
+    }
+
+    public long getIssuedAtMillis() {
+        return issuedAtMillis;
+    }
+
+    public long getExpirationMillis() {
+        return expirationMillis;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return expirationMillis <= nowMillis;
+    }
+
+    // 自定义claims（不含sub/iat/exp等标准字段）
+    public Map<String, Object> getClaims() {
+        return claims;
+    }
+
+    public Object getClaim(String name) {
+        return claims.get(name);
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getSecurityVersion() {
+        return securityVersion;
+    }
+
+    // 令牌携带的权限（如ROLE_ADMIN），旧版令牌没有该claim时为null
+    public List<String> getAuthorities() {
+        return authorities;
+    }
+
+    // 是否为可以脱离数据库独立完成认证的自包含令牌
+    public boolean isSelfContained() {
+        return userId != null && securityVersion != null && authorities != null;
+    }
+
+    @Override
+    public String toString() {
+        return "JwtPrincipal{" +
+                "subject='" + subject + '\'' +
+                ", type='" + type + '\'' +
+                ", expiration=" + expirationMillis +
+                '}';
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.demo.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+// JwtUtil前的有界验证缓存：同一个token在过期前只做一次HMAC校验。
+// 另有一个小的负缓存，扫描器重放的垃圾/过期token无需重复校验即可拒绝。
+@Component
+public class JwtTokenCache {
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // 每个进程随机的摘要种子，使外部难以构造碰撞
+    private static final long DIGEST_SEED = new SecureRandom().nextLong();
+
+    private final JwtUtil jwtUtil;
+    private final Cache<Long, CachedVerification> verified;
+    private final Cache<Long, CachedVerification> rejected;
+
+    @Autowired
+    public JwtTokenCache(JwtUtil jwtUtil,
+                         MeterRegistry meterRegistry,
+                         @Value("${jwt.cache.max-size:10000}") long maxSize,
+                         @Value("${jwt.cache.negative-max-size:2000}") long negativeMaxSize,
+                         @Value("${jwt.cache.negative-ttl-seconds:60}") long negativeTtlSeconds) {
+        this.jwtUtil = jwtUtil;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+        this.rejected = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(negativeTtlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "jwt.verified");
+        CaffeineCacheMetrics.monitor(meterRegistry, rejected, "jwt.rejected");
+    }
+
+    // 带缓存的token验证，语义与JwtUtil.verify一致
+    public JwtVerification verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return jwtUtil.verify(token);
+        }
+
+        long key = digest(token);
+        CachedVerification hit = verified.getIfPresent(key);
+        if (hit != null && hit.matches(token)) {
+            if (!hit.verification.getPrincipal().isExpired(System.currentTimeMillis())) {
+                return hit.verification;
+            }
+            verified.invalidate(key);
+        }
+
+        CachedVerification miss = rejected.getIfPresent(key);
+        if (miss != null && miss.matches(token)) {
+            return miss.verification;
+        }
+
+        JwtVerification verification = jwtUtil.verify(token);
+        if (verification.isValid()) {
+            verified.put(key, new CachedVerification(token, verification));
+        } else {
+            rejected.put(key, new CachedVerification(token, verification));
+        }
+        return verification;
+    }
+
+    // 主动失效（例如令牌被撤销）
+    public void invalidate(String token) {
+        if (token != null && !token.isEmpty()) {
+            long key = digest(token);
+            verified.invalidate(key);
+            rejected.invalidate(key);
+        }
+    }
+
+    // 64位FNV-1a摘要，不分配对象
+    private static long digest(String token) {
+        long hash = DIGEST_SEED;
+        for (int i = 0, n = token.length(); i < n; i++) {
+            hash ^= token.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    // 缓存值保存完整token，命中时逐字比对，摘要碰撞或同签名的篡改token都不会命中
+    private static final class CachedVerification {
+        private final String token;
+        private final JwtVerification verification;
+
+        CachedVerification(String token, JwtVerification verification) {
+            this.token = token;
+            this.verification = verification;
+        }
+
+        boolean matches(String token) {
+            return token.equals(this.token);
+        }
+    }
+
+    // 有效token缓存到其exp为止
+    private static final class UntilTokenExpiry implements Expiry<Long, CachedVerification> {
+        @Override
+        public long expireAfterCreate(Long key, CachedVerification value, long currentTime) {
+            long remainingMillis = value.verification.getPrincipal().getExpirationMillis() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0L, remainingMillis));
+        }
+
+        @Override
+        public long expireAfterUpdate(Long key, CachedVerification value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long key, CachedVerification value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
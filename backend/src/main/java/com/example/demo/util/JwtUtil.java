@@ -2,14 +2,20 @@ package com.example.demo.util;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
@@ -24,8 +30,84 @@ public class JwtUtil {
     @Value("${jwt.refresh-expiration:604800000}") // 7天
     private Long refreshExpiration;
 
+    // 自包含访问令牌的claim名称
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_AUTHORITIES = "roles";
+    public static final String CLAIM_SECURITY_VERSION = "ver";
+
+    // 解析时从自定义claims中剔除的标准字段
+    private static final Set<String> REGISTERED_CLAIMS = Set.of(
+            Claims.SUBJECT, Claims.ISSUED_AT, Claims.EXPIRATION, Claims.NOT_BEFORE,
+            Claims.ISSUER, Claims.AUDIENCE, Claims.ID, "type");
+
+    // 签名密钥和解析器都是线程安全的，启动时构建一次
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    public void init() {
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+    }
+
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+        return signingKey;
+    }
+
+    // 解析并验证token，只做一次HMAC校验；失败以结果码返回而不是抛出异常
+    public JwtVerification verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return JwtVerification.failure(JwtVerification.Status.MISSING);
+        }
+        if (!hasCompactJwsShape(token)) {
+            // 明显的垃圾token直接拒绝，不进入jjwt的异常路径
+            return JwtVerification.failure(JwtVerification.Status.MALFORMED);
+        }
+        try {
+            Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+            return JwtVerification.valid(toPrincipal(claims));
+        } catch (ExpiredJwtException e) {
+            return JwtVerification.failure(JwtVerification.Status.EXPIRED);
+        } catch (SignatureException e) {
+            return JwtVerification.failure(JwtVerification.Status.INVALID_SIGNATURE);
+        } catch (UnsupportedJwtException e) {
+            return JwtVerification.failure(JwtVerification.Status.UNSUPPORTED);
+        } catch (JwtException | IllegalArgumentException e) {
+            return JwtVerification.failure(JwtVerification.Status.MALFORMED);
+        }
+    }
+
+    private JwtPrincipal toPrincipal(Claims claims) {
+        Map<String, Object> custom = new HashMap<>();
+        for (Map.Entry<String, Object> entry : claims.entrySet()) {
+            if (!REGISTERED_CLAIMS.contains(entry.getKey())) {
+                custom.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new JwtPrincipal(
+                claims.getId(),
+                claims.getSubject(),
+                claims.get("type", String.class),
+                claims.getIssuedAt(),
+                claims.getExpiration(),
+                custom);
+    }
+
+    // 紧凑JWS格式：三段base64url，以两个'.'分隔
+    private static boolean hasCompactJwsShape(String token) {
+        int dots = 0;
+        for (int i = 0, n = token.length(); i < n; i++) {
+            char c = token.charAt(i);
+            if (c == '.') {
+                dots++;
+            } else if (!((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_')) {
+                return false;
+            }
+        }
+        return dots == 2;
     }
 
     // 从token中获取用户名
@@ -46,17 +128,7 @@ public class JwtUtil {
 
     // 获取token中的所有claims
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-    }
-
-    // 检查token是否过期
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
+        return jwtParser.parseSignedClaims(token).getPayload();
     }
 
     // 生成访问令牌
@@ -68,7 +140,27 @@ public class JwtUtil {
     // 生成刷新令牌
     public String generateRefreshToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("type", "refresh");
+        claims.put("type", JwtPrincipal.TYPE_REFRESH);
+        return createToken(claims, userDetails.getUsername(), refreshExpiration);
+    }
+
+    // 生成自包含访问令牌：携带用户ID、权限和安全版本，过滤器无需再查询数据库
+    public String generateToken(UserDetails userDetails, Long userId, long securityVersion) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_USER_ID, userId);
+        claims.put(CLAIM_AUTHORITIES, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList());
+        claims.put(CLAIM_SECURITY_VERSION, securityVersion);
+        return createToken(claims, userDetails.getUsername(), expiration);
+    }
+
+    // 生成携带安全版本的刷新令牌，撤销性变更后同样失效
+    public String generateRefreshToken(UserDetails userDetails, Long userId, long securityVersion) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("type", JwtPrincipal.TYPE_REFRESH);
+        claims.put(CLAIM_USER_ID, userId);
+        claims.put(CLAIM_SECURITY_VERSION, securityVersion);
         return createToken(claims, userDetails.getUsername(), refreshExpiration);
     }
 
@@ -76,6 +168,7 @@ public class JwtUtil {
     private String createToken(Map<String, Object> claims, String subject, Long expiration) {
         return Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
@@ -85,37 +178,27 @@ public class JwtUtil {
 
     // 验证token
     public Boolean validateToken(String token, UserDetails userDetails) {
-        try {
-            final String username = getUsernameFromToken(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
-        }
+        JwtVerification verification = verify(token);
+        return verification.isValid()
+                && verification.getPrincipal().getSubject().equals(userDetails.getUsername());
     }
 
     // 验证token格式
     public Boolean validateTokenFormat(String token) {
-        try {
-            getAllClaimsFromToken(token);
-            return !isTokenExpired(token);
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
-        }
+        return verify(token).isValid();
     }
 
     // 检查是否为刷新令牌
     public Boolean isRefreshToken(String token) {
-        try {
-            Claims claims = getAllClaimsFromToken(token);
-            return "refresh".equals(claims.get("type"));
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
-        }
+        JwtVerification verification = verify(token);
+        return verification.isValid() && verification.getPrincipal().isRefreshToken();
     }
 
     // 从刷新令牌生成新的访问令牌
     public String refreshAccessToken(String refreshToken, UserDetails userDetails) {
-        if (validateToken(refreshToken, userDetails) && isRefreshToken(refreshToken)) {
+        JwtVerification verification = verify(refreshToken);
+        if (verification.isValid() && verification.getPrincipal().isRefreshToken()
+                && verification.getPrincipal().getSubject().equals(userDetails.getUsername())) {
             return generateToken(userDetails);
         }
         throw new IllegalArgumentException("Invalid refresh token");
@@ -0,0 +1,57 @@
+package com.example.demo.util;
+
+// JWT验证结果：失败时只返回结果码，不向调用方抛出异常
+public final class JwtVerification {
+
+    public enum Status {
+        VALID,
+        MISSING,
+        MALFORMED,
+        INVALID_SIGNATURE,
+        EXPIRED,
+        UNSUPPORTED
+    }
+
+    // 失败结果没有负载，复用单例避免每次分配
+    private static final JwtVerification MISSING = new JwtVerification(Status.MISSING, null);
+    private static final JwtVerification MALFORMED = new JwtVerification(Status.MALFORMED, null);
+    private static final JwtVerification INVALID_SIGNATURE = new JwtVerification(Status.INVALID_SIGNATURE, null);
+    private static final JwtVerification EXPIRED = new JwtVerification(Status.EXPIRED, null);
+    private static final JwtVerification UNSUPPORTED = new JwtVerification(Status.UNSUPPORTED, null);
+
+    private final Status status;
+    private final JwtPrincipal principal;
+
+    private JwtVerification(Status status, JwtPrincipal principal) {
+        this.status = status;
+        this.principal = principal;
+    }
+
+    static JwtVerification valid(JwtPrincipal principal) {
+        return new JwtVerification(Status.VALID, principal);
+    }
+
+    static JwtVerification failure(Status status) {
+        switch (status) {
+            case MISSING: return MISSING;
+            case MALFORMED: return MALFORMED;
+            case INVALID_SIGNATURE: return INVALID_SIGNATURE;
+            case EXPIRED: return EXPIRED;
+            case UNSUPPORTED: return UNSUPPORTED;
+            default: throw new IllegalArgumentException("不是失败状态: " + status);
+        }
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isValid() {
+        return status == Status.VALID;
+    }
+
+    // 仅在isValid()为true时非空
+    public JwtPrincipal getPrincipal() {
+        return principal;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.demo.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Component;
+
+import java.beans.PropertyDescriptor;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// 游标分页的游标编解码：游标是Base64编码的JSON，记录排序方式以及上一页最后一条记录的排序字段值和ID。
+// 游标只能配合生成它时的排序方式使用，排序字段必须非空（空值无法参与 > / < 比较）
+@Component
+public class KeysetCursorCodec {
+
+    private static final String ID_PROPERTY = "id";
+
+    private final ObjectMapper objectMapper;
+
+    public KeysetCursorCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    // 解析游标，为空时返回第一页的位置
+    public KeysetScrollPosition decode(String cursor, Sort sort, Class<?> entityType, Set<String> sortableFields) {
+        for (Sort.Order order : sort) {
+            if (!sortableFields.contains(order.getProperty())) {
+                throw new RuntimeException("游标分页不支持按该字段排序: " + order.getProperty());
+            }
+        }
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+
+        CursorPayload payload;
+        try {
+            payload = objectMapper.readValue(Base64.getUrlDecoder().decode(cursor.trim()), CursorPayload.class);
+        } catch (Exception e) {
+            throw new RuntimeException("无效的分页游标");
+        }
+        if (payload.keys == null || !sort.toString().equals(payload.sort)) {
+            throw new RuntimeException("分页游标与当前排序方式不一致");
+        }
+
+        // 只取排序字段和ID，并还原为实体属性的类型
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (Sort.Order order : sort) {
+            keys.put(order.getProperty(), convert(payload.keys, order.getProperty(), entityType));
+        }
+        keys.put(ID_PROPERTY, convert(payload.keys, ID_PROPERTY, entityType));
+        return ScrollPosition.forward(keys);
+    }
+
+    // 生成下一页的游标，没有下一页时返回null
+    public String nextCursor(Window<?> window, Sort sort) {
+        if (!window.hasNext() || window.isEmpty()) {
+            return null;
+        }
+        KeysetScrollPosition position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+        CursorPayload payload = new CursorPayload();
+        payload.sort = sort.toString();
+        payload.keys = position.getKeys();
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(payload));
+        } catch (Exception e) {
+            throw new RuntimeException("生成分页游标失败: " + e.getMessage());
+        }
+    }
+
+    private Object convert(Map<String, Object> keys, String property, Class<?> entityType) {
+        Object value = keys.get(property);
+        PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(entityType, property);
+        if (value == null || descriptor == null) {
+            throw new RuntimeException("无效的分页游标");
+        }
+        try {
+            return objectMapper.convertValue(value, descriptor.getPropertyType());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("无效的分页游标");
+        }
+    }
+
+    static class CursorPayload {
+        public String sort;
+        public Map<String, Object> keys;
+    }
+}
@@ -0,0 +1,346 @@
+package com.example.demo.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// 短文本字段的内存子串索引（n-gram倒排索引），用于管理后台的联想搜索。
+// 文本先做NFKC归一化（全角转半角）并转小写，每个字符（单字）和每对相邻字符（二元组）作为词项；
+// 倒排表是按槽位号升序的int数组。单字符查询直接读单字倒排表，更长的查询对各二元组倒排表求交集得到候选，
+// 再用子串比较确认并打分。按字符切分不需要分词，中文姓名和英文用户名一样可以检索。
+// 查询持读锁，增删改持写锁
+public final class NgramIndex {
+
+    public static final class Hit {
+        private final long id;
+        private final int score;
+        private final List<String> values;
+
+        Hit(long id, int score, List<String> values) {
+            this.id = id;
+            this.score = score;
+            this.values = values;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        // 写入时的原始字段值（未归一化），顺序与put时一致
+        public List<String> getValues() {
+            return values;
+        }
+    }
+
+    // 同分时ID小的在前；堆顶是当前最差的结果
+    private static final Comparator<Hit> RANKING = Comparator.comparingInt(Hit::getScore).reversed()
+            .thenComparingLong(Hit::getId);
+
+    private final int[] fieldWeights;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> slotsById = new HashMap<>();
+    private final Map<Integer, Postings> postings = new HashMap<>();
+
+    // 按槽位存放文档；删除后槽位进入空闲栈复用
+    private long[] ids = new long[64];
+    private List<String>[] values = newValueArray(64);
+    private String[][] keys = new String[64][];
+    private int slotCount;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    // fieldWeights为各字段的权重，字段个数与put传入的值个数一致
+    public NgramIndex(int... fieldWeights) {
+        this.fieldWeights = fieldWeights.clone();
+    }
+
+    // 新增或替换文档
+    public void put(long id, String... fieldValues) {
+        if (fieldValues.length != fieldWeights.length) {
+            throw new IllegalArgumentException("字段个数应为" + fieldWeights.length);
+        }
+        String[] normalized = new String[fieldValues.length];
+        for (int i = 0; i < fieldValues.length; i++) {
+            normalized[i] = normalize(fieldValues[i]);
+        }
+        int[] grams = grams(normalized);
+        List<String> original = Collections.unmodifiableList(Arrays.asList(fieldValues.clone()));
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = slotsById.remove(id);
+            if (existing != null) {
+                release(existing);
+            }
+            int slot = allocate();
+            ids[slot] = id;
+            values[slot] = original;
+            keys[slot] = normalized;
+            slotsById.put(id, slot);
+            for (int gram : grams) {
+                postings.computeIfAbsent(gram, g -> new Postings()).add(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsById.remove(id);
+            if (slot != null) {
+                release(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slotsById.clear();
+            postings.clear();
+            Arrays.fill(values, null);
+            Arrays.fill(keys, null);
+            slotCount = 0;
+            freeCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int gramCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 返回包含查询文本的文档，按得分从高到低，最多limit条
+    public List<Hit> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int[] queryGrams = q.length() == 1 ? new int[]{q.charAt(0)} : distinctBigrams(q);
+
+        lock.readLock().lock();
+        try {
+            int[] candidates = candidates(queryGrams);
+            if (candidates.length == 0) {
+                return List.of();
+            }
+            PriorityQueue<Hit> top = new PriorityQueue<>(Math.min(limit, candidates.length) + 1, RANKING.reversed());
+            for (int slot : candidates) {
+                int score = score(keys[slot], q);
+                if (score < 0) {
+                    continue;
+                }
+                if (top.size() < limit) {
+                    top.add(new Hit(ids[slot], score, values[slot]));
+                } else if (score > top.peek().getScore()
+                        || (score == top.peek().getScore() && ids[slot] < top.peek().getId())) {
+                    top.poll();
+                    top.add(new Hit(ids[slot], score, values[slot]));
+                }
+            }
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(RANKING);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 各词项倒排表的交集，从最短的表开始求交
+    private int[] candidates(int[] queryGrams) {
+        Postings[] lists = new Postings[queryGrams.length];
+        for (int i = 0; i < queryGrams.length; i++) {
+            lists[i] = postings.get(queryGrams[i]);
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+        int[] result = Arrays.copyOf(lists[0].slots, lists[0].size);
+        int size = result.length;
+        for (int i = 1; i < lists.length && size > 0; i++) {
+            Postings other = lists[i];
+            int kept = 0;
+            int from = 0;
+            for (int j = 0; j < size; j++) {
+                int found = Arrays.binarySearch(other.slots, from, other.size, result[j]);
+                if (found >= 0) {
+                    result[kept++] = result[j];
+                    from = found + 1;
+                } else {
+                    from = -found - 1;
+                }
+            }
+            size = kept;
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    // 各字段中最好的匹配得分：完全相等 > 前缀 > 词首（前一字符不是字母或数字） > 其他位置；
+    // 再乘以字段权重，同等匹配时字段越短得分越高。二元组交集只是候选，这里确认是否真的包含，不包含返回-1
+    private int score(String[] fieldKeys, String q) {
+        int best = -1;
+        for (int i = 0; i < fieldKeys.length; i++) {
+            String key = fieldKeys[i];
+            int pos = key.indexOf(q);
+            if (pos < 0) {
+                continue;
+            }
+            int match;
+            if (pos == 0) {
+                match = key.length() == q.length() ? 4 : 3;
+            } else {
+                match = Character.isLetterOrDigit(key.charAt(pos - 1)) ? 1 : 2;
+            }
+            int score = (match * fieldWeights[i]) * 32 + (31 - Math.min(31, key.length() - q.length()));
+            best = Math.max(best, score);
+        }
+        return best;
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            values = Arrays.copyOf(values, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+        return slotCount++;
+    }
+
+    private void release(int slot) {
+        for (int gram : grams(keys[slot])) {
+            Postings list = postings.get(gram);
+            if (list != null && list.remove(slot) && list.size == 0) {
+                postings.remove(gram);
+            }
+        }
+        values[slot] = null;
+        keys[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).trim();
+    }
+
+    // 文档的全部词项（去重）：单字的键是字符本身，二元组的键是两个字符拼成的int（高16位非零，不会与单字冲突）
+    private static int[] grams(String[] fieldKeys) {
+        int total = 0;
+        for (String key : fieldKeys) {
+            total += Math.max(0, key.length() * 2 - 1);
+        }
+        int[] grams = new int[total];
+        int n = 0;
+        for (String key : fieldKeys) {
+            for (int i = 0; i < key.length(); i++) {
+                grams[n++] = key.charAt(i);
+                if (i + 1 < key.length()) {
+                    grams[n++] = bigram(key.charAt(i), key.charAt(i + 1));
+                }
+            }
+        }
+        return distinct(grams, n);
+    }
+
+    private static int[] distinctBigrams(String q) {
+        int[] grams = new int[q.length() - 1];
+        for (int i = 0; i + 1 < q.length(); i++) {
+            grams[i] = bigram(q.charAt(i), q.charAt(i + 1));
+        }
+        return distinct(grams, grams.length);
+    }
+
+    private static int bigram(char first, char second) {
+        return (first << 16) | second;
+    }
+
+    private static int[] distinct(int[] grams, int length) {
+        if (length == 0) {
+            return new int[0];
+        }
+        Arrays.sort(grams, 0, length);
+        int n = 1;
+        for (int i = 1; i < length; i++) {
+            if (grams[i] != grams[n - 1]) {
+                grams[n++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, n);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String>[] newValueArray(int capacity) {
+        return (List<String>[]) new List<?>[capacity];
+    }
+
+    // 有序的槽位号数组
+    private static final class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            int pos = Arrays.binarySearch(slots, 0, size, slot);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            System.arraycopy(slots, pos, slots, pos + 1, size - pos);
+            slots[pos] = slot;
+            size++;
+        }
+
+        boolean remove(int slot) {
+            int pos = Arrays.binarySearch(slots, 0, size, slot);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(slots, pos + 1, slots, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.util;
+
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+
+// 限流表、拦截器和登录接口实际用到的限流操作：只有尝试消费令牌两种。
+// 节点本地的bucket4j桶和集群模式下的租约桶都实现这个接口，调用方不依赖完整的Bucket接口
+public interface RateLimitBucket {
+
+    // 尝试消费令牌，不足时立即返回false
+    boolean tryConsume(long numTokens);
+
+    // 尝试消费令牌，并返回剩余令牌数和需要等待的时间
+    ConsumptionProbe tryConsumeAndReturnRemaining(long numTokens);
+
+    // 包装节点本地的bucket4j桶
+    static RateLimitBucket local(Bucket bucket) {
+        return new RateLimitBucket() {
+            @Override
+            public boolean tryConsume(long numTokens) {
+                return bucket.tryConsume(numTokens);
+            }
+
+            @Override
+            public ConsumptionProbe tryConsumeAndReturnRemaining(long numTokens) {
+                return bucket.tryConsumeAndReturnRemaining(numTokens);
+            }
+        };
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.demo.util;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// 按客户端IP分片的限流桶表。
+// 请求线程：IP解析为两个long后在分片的开放寻址数组中查找，无锁、命中时不分配对象；
+// 新IP通过CAS占用空槽，每个分片的槽位数固定，伪造IP的洪水无法撑大堆内存。
+// 分片写满后，新客户端按所在网段（IPv4 /24、IPv6 /48）哈希到固定数量的溢出桶上，照常受限流；
+// 伪造IP填满分片后，真实客户端只与哈希到同一溢出桶的客户端共享配额，而不是所有新客户端共用一个桶，
+// 溢出路径也不分配对象。
+// 维护线程：空闲条目由时间轮到期移除（置为墓碑），墓碑过多时重建分片，不做全表扫描
+public final class RateLimiterTable {
+
+    private static final int SHARD_BITS = 4;
+    private static final int SHARDS = 1 << SHARD_BITS;
+    private static final int OVERFLOW_BUCKETS = 1024;
+
+    private static final long IPV4_MAPPED_PREFIX = 0x0000_FFFF_0000_0000L;
+    private static final long IPV4_24_MASK = 0xFFFF_FFFF_FFFF_FF00L;
+    private static final long IPV6_48_MASK = 0xFFFF_FFFF_FFFF_0000L;
+
+    private static final Entry TOMBSTONE = new Entry(0L, 0L, null, 0);
+    private static final ThreadLocal<long[]> KEY_SCRATCH = ThreadLocal.withInitial(() -> new long[2]);
+
+    // 按客户端键创建限流桶，键为ClientAddress解析出的高低64位
+    @FunctionalInterface
+    public interface BucketFactory {
+        RateLimitBucket create(long high, long low);
+    }
+
+    private static final class Entry {
+        final long high;
+        final long low;
+        final RateLimitBucket bucket;
+        // 最近访问的秒数；同一秒内只写一次
+        volatile int lastAccess;
+
+        Entry(long high, long low, RateLimitBucket bucket, int lastAccess) {
+            this.high = high;
+            this.low = low;
+            this.bucket = bucket;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    // 分片的槽位数组和已占用槽位数（含墓碑）；重建时整体替换
+    private static final class Table {
+        final AtomicReferenceArray<Entry> slots;
+        final AtomicInteger used = new AtomicInteger();
+        // 仅维护线程读写
+        int tombstones;
+
+        Table(int capacity) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    private final BucketFactory bucketFactory;
+    private final int idleTtlSeconds;
+    private final int shardLimit;
+    private final int shardCapacity;
+    private final long seed = new SecureRandom().nextLong();
+    private final AtomicReferenceArray<Table> shards = new AtomicReferenceArray<>(SHARDS);
+    // 按网段哈希的溢出桶，首次使用时创建
+    private final AtomicReferenceArray<RateLimitBucket> overflowBuckets = new AtomicReferenceArray<>(OVERFLOW_BUCKETS);
+    private final AtomicLong overflowHits = new AtomicLong();
+
+    // 新条目先入队，由维护线程登记到时间轮
+    private final ConcurrentLinkedQueue<Entry> newEntries = new ConcurrentLinkedQueue<>();
+    private final TimingWheel<Entry> wheel = new TimingWheel<>(0L);
+    private final List<Entry> expired = new ArrayList<>();
+
+    // 当前时间（秒），由维护线程推进
+    private volatile int clock;
+
+    public RateLimiterTable(BucketFactory bucketFactory, int maxEntries, int idleTtlSeconds) {
+        this.bucketFactory = bucketFactory;
+        this.idleTtlSeconds = idleTtlSeconds;
+        this.shardLimit = Math.max(1, (maxEntries + SHARDS - 1) / SHARDS);
+        // 装载因子不超过0.5，探测链保持很短
+        this.shardCapacity = Integer.highestOneBit(shardLimit * 2 - 1) << 1;
+        for (int i = 0; i < SHARDS; i++) {
+            shards.set(i, new Table(shardCapacity));
+        }
+    }
+
+    // 获取客户端的限流桶
+    public RateLimitBucket get(String clientIp) {
+        long[] key = KEY_SCRATCH.get();
+        ClientAddress.parse(clientIp, key);
+        return get(key[0], key[1]);
+    }
+
+    // 按已解析的128位键获取限流桶
+    public RateLimitBucket get(long high, long low) {
+        int hash = hash(high, low);
+        Table table = shards.get(hash & (SHARDS - 1));
+
+        Entry entry = find(table, high, low, hash >>> SHARD_BITS);
+        if (entry == null) {
+            entry = insert(table, high, low, hash >>> SHARD_BITS);
+            if (entry == null) {
+                overflowHits.incrementAndGet();
+                return overflowBucket(high, low);
+            }
+        }
+
+        int now = clock;
+        if (entry.lastAccess != now) {
+            entry.lastAccess = now;
+        }
+        return entry.bucket;
+    }
+
+    // 分片已满时按网段取溢出桶：IPv4取/24，IPv6取/48；保留前缀下的键（无法解析的值、按用户的键）不是网段，按完整键哈希
+    private RateLimitBucket overflowBucket(long high, long low) {
+        long prefixHigh;
+        long prefixLow;
+        if (ClientAddress.isReserved(high)) {
+            prefixHigh = high;
+            prefixLow = low;
+        } else if (high == 0L && (low & ~0xFFFF_FFFFL) == IPV4_MAPPED_PREFIX) {
+            prefixHigh = 0L;
+            prefixLow = low & IPV4_24_MASK;
+        } else {
+            prefixHigh = high & IPV6_48_MASK;
+            prefixLow = 0L;
+        }
+
+        int index = hash(prefixHigh, prefixLow) & (OVERFLOW_BUCKETS - 1);
+        RateLimitBucket bucket = overflowBuckets.get(index);
+        if (bucket == null) {
+            RateLimitBucket created = bucketFactory.create(prefixHigh, prefixLow);
+            bucket = overflowBuckets.compareAndSet(index, null, created) ? created : overflowBuckets.get(index);
+        }
+        return bucket;
+    }
+
+    // 维护线程调用：推进时钟，移除空闲条目，必要时重建分片；返回本周期内因分片已满使用溢出桶的请求数
+    public long expire(int now) {
+        clock = now;
+
+        Entry entry;
+        while ((entry = newEntries.poll()) != null) {
+            wheel.schedule(entry, (long) entry.lastAccess + idleTtlSeconds);
+        }
+
+        expired.clear();
+        wheel.advance(now, expired);
+        for (Entry candidate : expired) {
+            // 期间被访问过的条目按最近访问时间重新登记
+            int lastAccess = candidate.lastAccess;
+            if (now - lastAccess >= idleTtlSeconds) {
+                remove(candidate);
+            } else {
+                wheel.schedule(candidate, (long) lastAccess + idleTtlSeconds);
+            }
+        }
+        expired.clear();
+
+        for (int i = 0; i < SHARDS; i++) {
+            Table table = shards.get(i);
+            if (table.tombstones > 0
+                    && (table.tombstones >= shardLimit / 4 || table.used.get() >= shardLimit)) {
+                rebuild(i, table);
+            }
+        }
+
+        return overflowHits.getAndSet(0);
+    }
+
+    // 当前条目数（近似值）
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            Table table = shards.get(i);
+            size += table.used.get() - table.tombstones;
+        }
+        return size;
+    }
+
+    private int hash(long high, long low) {
+        long h = (high ^ seed) * 0x9E3779B97F4A7C15L + low;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static Entry find(Table table, long high, long low, int hash) {
+        AtomicReferenceArray<Entry> slots = table.slots;
+        int mask = slots.length() - 1;
+        for (int probe = 0, index = hash & mask; probe <= mask; probe++, index = (index + 1) & mask) {
+            Entry current = slots.get(index);
+            if (current == null) {
+                return null;
+            }
+            if (current != TOMBSTONE && current.high == high && current.low == low) {
+                return current;
+            }
+        }
+        return null;
+    }
+
+    // 只占用空槽、不复用墓碑，保证同一个键在探测链上最多出现一次
+    private Entry insert(Table table, long high, long low, int hash) {
+        if (table.used.get() >= shardLimit) {
+            return null;
+        }
+
+        AtomicReferenceArray<Entry> slots = table.slots;
+        int mask = slots.length() - 1;
+        Entry created = null;
+        for (int probe = 0, index = hash & mask; probe <= mask; probe++, index = (index + 1) & mask) {
+            Entry current = slots.get(index);
+            if (current == null) {
+                if (created == null) {
+                    created = new Entry(high, low, bucketFactory.create(high, low), clock);
+                }
+                if (slots.compareAndSet(index, null, created)) {
+                    table.used.incrementAndGet();
+                    newEntries.offer(created);
+                    return created;
+                }
+                current = slots.get(index);
+            }
+            if (current != TOMBSTONE && current.high == high && current.low == low) {
+                return current;
+            }
+        }
+        return null;
+    }
+
+    private void remove(Entry entry) {
+        int hash = hash(entry.high, entry.low);
+        Table table = shards.get(hash & (SHARDS - 1));
+        AtomicReferenceArray<Entry> slots = table.slots;
+        int mask = slots.length() - 1;
+        for (int probe = 0, index = (hash >>> SHARD_BITS) & mask; probe <= mask; probe++, index = (index + 1) & mask) {
+            Entry current = slots.get(index);
+            if (current == null) {
+                return;
+            }
+            if (current == entry) {
+                slots.set(index, TOMBSTONE);
+                table.tombstones++;
+                return;
+            }
+        }
+    }
+
+    // 用存活条目重建分片并替换。替换后再扫一遍旧数组，补上复制期间新插入的条目；
+    // 极少数恰好在此之后写入旧数组的新客户端会在下次请求时重新建桶
+    private void rebuild(int shard, Table old) {
+        Table fresh = new Table(shardCapacity);
+        copyLive(old, fresh);
+        shards.set(shard, fresh);
+        copyLive(old, fresh);
+    }
+
+    private void copyLive(Table from, Table to) {
+        AtomicReferenceArray<Entry> source = from.slots;
+        AtomicReferenceArray<Entry> target = to.slots;
+        int mask = target.length() - 1;
+        for (int i = 0; i < source.length(); i++) {
+            Entry entry = source.get(i);
+            if (entry == null || entry == TOMBSTONE) {
+                continue;
+            }
+            int hash = hash(entry.high, entry.low) >>> SHARD_BITS;
+            for (int probe = 0, index = hash & mask; probe <= mask; probe++, index = (index + 1) & mask) {
+                Entry current = target.get(index);
+                if (current == null) {
+                    if (target.compareAndSet(index, null, entry)) {
+                        to.used.incrementAndGet();
+                        break;
+                    }
+                    current = target.get(index);
+                }
+                if (current.high == entry.high && current.low == entry.low) {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.demo.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// 路由匹配器：启动时把路径模式编译成按路径段组织的前缀树，请求时逐段匹配，不拆分字符串、不分配对象。
+// 模式支持字面量段、单段通配 * 或 {变量}、以及末尾的 **（匹配剩余任意段）。
+// 多条路由同时匹配时取注册顺序最靠前的一条；路由还可以按HTTP方法和角色位掩码过滤
+public final class RouteMatcher {
+
+    public static final int ANY_METHOD = -1;
+    public static final long ANY_ROLE = 0L;
+
+    private static final int[] NONE = new int[0];
+
+    private static final class Node {
+        String[] literals = new String[0];
+        Node[] literalChildren = new Node[0];
+        Node wildcard;
+        // 在此结束的路由
+        int[] terminal = NONE;
+        // 在此以 ** 结尾的路由
+        int[] rest = NONE;
+
+        Node child(String segment) {
+            for (int i = 0; i < literals.length; i++) {
+                if (literals[i].equals(segment)) {
+                    return literalChildren[i];
+                }
+            }
+            Node node = new Node();
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            literalChildren = Arrays.copyOf(literalChildren, literalChildren.length + 1);
+            literals[literals.length - 1] = segment;
+            literalChildren[literalChildren.length - 1] = node;
+            return node;
+        }
+    }
+
+    private final Node root = new Node();
+    private final List<Integer> methodMasks = new ArrayList<>();
+    private final List<Long> roleMasks = new ArrayList<>();
+    private int[] methods = NONE;
+    private long[] roles = new long[0];
+
+    // 注册路由，返回路由序号；仅在启动阶段调用
+    public int add(String pattern, int methodMask, long roleMask) {
+        int route = methodMasks.size();
+        Node node = root;
+        String[] segments = pattern.split("/");
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.equals("**")) {
+                if (i != segments.length - 1) {
+                    throw new IllegalArgumentException("** 只能出现在路径模式末尾: " + pattern);
+                }
+                node.rest = append(node.rest, route);
+                register(methodMask, roleMask);
+                return route;
+            }
+            if (segment.equals("*") || (segment.startsWith("{") && segment.endsWith("}"))) {
+                if (node.wildcard == null) {
+                    node.wildcard = new Node();
+                }
+                node = node.wildcard;
+            } else if (segment.indexOf('*') >= 0 || segment.indexOf('{') >= 0) {
+                throw new IllegalArgumentException("不支持段内通配符: " + pattern);
+            } else {
+                node = node.child(segment);
+            }
+        }
+        node.terminal = append(node.terminal, route);
+        register(methodMask, roleMask);
+        return route;
+    }
+
+    // 匹配path中从offset开始的路径（用于跳过context path），返回路由序号，没有匹配时返回-1
+    public int match(String path, int offset, int methodBit, long roleMask) {
+        int best = match(root, path, offset, methodBit, roleMask, Integer.MAX_VALUE);
+        return best == Integer.MAX_VALUE ? -1 : best;
+    }
+
+    // HTTP方法对应的位
+    public static int methodBit(String method) {
+        switch (method) {
+            case "GET":
+                return 1;
+            case "HEAD":
+                return 1 << 1;
+            case "POST":
+                return 1 << 2;
+            case "PUT":
+                return 1 << 3;
+            case "PATCH":
+                return 1 << 4;
+            case "DELETE":
+                return 1 << 5;
+            case "OPTIONS":
+                return 1 << 6;
+            default:
+                return 1 << 7;
+        }
+    }
+
+    private int match(Node node, String path, int pos, int methodBit, long roleMask, int best) {
+        best = pick(node.rest, methodBit, roleMask, best);
+
+        int length = path.length();
+        while (pos < length && path.charAt(pos) == '/') {
+            pos++;
+        }
+        if (pos >= length) {
+            return pick(node.terminal, methodBit, roleMask, best);
+        }
+
+        int end = path.indexOf('/', pos);
+        if (end < 0) {
+            end = length;
+        }
+        int segmentLength = end - pos;
+        for (int i = 0; i < node.literals.length; i++) {
+            String literal = node.literals[i];
+            if (literal.length() == segmentLength && path.regionMatches(pos, literal, 0, segmentLength)) {
+                best = match(node.literalChildren[i], path, end, methodBit, roleMask, best);
+                break;
+            }
+        }
+        if (node.wildcard != null) {
+            best = match(node.wildcard, path, end, methodBit, roleMask, best);
+        }
+        return best;
+    }
+
+    private int pick(int[] routes, int methodBit, long roleMask, int best) {
+        for (int route : routes) {
+            if (route < best
+                    && (methods[route] & methodBit) != 0
+                    && (roles[route] == ANY_ROLE || (roles[route] & roleMask) != 0)) {
+                best = route;
+            }
+        }
+        return best;
+    }
+
+    private void register(int methodMask, long roleMask) {
+        methodMasks.add(methodMask);
+        roleMasks.add(roleMask);
+        methods = methodMasks.stream().mapToInt(Integer::intValue).toArray();
+        roles = roleMasks.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static int[] append(int[] routes, int route) {
+        int[] result = Arrays.copyOf(routes, routes.length + 1);
+        result[routes.length] = route;
+        return result;
+    }
+}
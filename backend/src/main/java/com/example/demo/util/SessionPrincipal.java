@@ -0,0 +1,50 @@
+package com.example.demo.util;
+
+import java.io.Serializable;
+import java.util.List;
+
+// 会话中保存的已认证主体：登录时写入，过滤器凭安全版本校验后直接使用，无需重新加载用户
+public final class SessionPrincipal implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String SESSION_ATTRIBUTE = SessionPrincipal.class.getName();
+
+    private final Long userId;
+    private final String username;
+    private final List<String> authorities;
+    private final long securityVersion;
+
+    public SessionPrincipal(Long userId, String username, List<String> authorities, long securityVersion) {
+        this.userId = userId;
+        this.username = username;
+        this.authorities = List.copyOf(authorities);
+        this.securityVersion = securityVersion;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public List<String> getAuthorities() {
+        return authorities;
+    }
+
+    public long getSecurityVersion() {
+        return securityVersion;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionPrincipal{" +
+                "userId=" + userId +
+                ", username='" + username + '\'' +
+                ", authorities=" + authorities +
+                ", securityVersion=" + securityVersion +
+                '}';
+    }
+}
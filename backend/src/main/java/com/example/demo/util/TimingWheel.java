@@ -0,0 +1,87 @@
+package com.example.demo.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// 分层时间轮：4层、每层64格，覆盖2^24个刻度。到期时间较远的条目放在高层，
+// 随时间推进逐层下落，只处理到期格子里的条目，不扫描全部条目。非线程安全，只能由单个线程使用
+public final class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private static final class Timer<T> {
+        final T value;
+        final long deadline;
+
+        Timer(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+    }
+
+    // 第level层第index格位于level * SLOTS + index
+    private final List<ArrayDeque<Timer<T>>> slots = new ArrayList<>(LEVELS * SLOTS);
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long startTick) {
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayDeque<>());
+        }
+        this.currentTick = startTick;
+    }
+
+    // 在deadline刻度到期；已过期的时间按下一刻度处理
+    public void schedule(T value, long deadline) {
+        place(new Timer<>(value, Math.max(deadline, currentTick + 1)));
+        size++;
+    }
+
+    // 推进到toTick，到期条目追加到expired
+    public void advance(long toTick, List<T> expired) {
+        while (currentTick < toTick) {
+            currentTick++;
+            // 低位归零时，上层对应格子的条目下落到下层
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(slots.get(level * SLOTS + (int) ((currentTick >>> (BITS * level)) & MASK)));
+                }
+            }
+
+            ArrayDeque<Timer<T>> slot = slots.get((int) (currentTick & MASK));
+            Timer<T> timer;
+            while ((timer = slot.poll()) != null) {
+                expired.add(timer.value);
+                size--;
+            }
+        }
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void cascade(ArrayDeque<Timer<T>> slot) {
+        int count = slot.size();
+        for (int i = 0; i < count; i++) {
+            place(slot.poll());
+        }
+    }
+
+    private void place(Timer<T> timer) {
+        long delta = timer.deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) {
+            level++;
+        }
+        slots.get(level * SLOTS + (int) ((timer.deadline >>> (BITS * level)) & MASK)).add(timer);
+    }
+}
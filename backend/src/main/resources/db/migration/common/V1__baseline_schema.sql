@@ -0,0 +1,58 @@
+-- 初始表结构，与实体映射一致（已有数据库通过baseline跳过此脚本）
+
+CREATE TABLE users (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    username VARCHAR(255),
+    password VARCHAR(255),
+    email VARCHAR(255),
+    full_name VARCHAR(255),
+    phone VARCHAR(255),
+    department VARCHAR(255),
+    position VARCHAR(255),
+    role VARCHAR(255) CHECK (role IN ('ADMIN', 'USER', 'MANAGER')),
+    status VARCHAR(255) CHECK (status IN ('ACTIVE', 'INACTIVE', 'PENDING')),
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6),
+    last_login TIMESTAMP(6),
+    CONSTRAINT pk_users PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE roles (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    name VARCHAR(255),
+    code VARCHAR(255),
+    description VARCHAR(255),
+    status VARCHAR(255) CHECK (status IN ('ACTIVE', 'INACTIVE')),
+    sort_order INTEGER,
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6),
+    CONSTRAINT pk_roles PRIMARY KEY (id),
+    CONSTRAINT uk_roles_name UNIQUE (name),
+    CONSTRAINT uk_roles_code UNIQUE (code)
+);
+
+CREATE TABLE permissions (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    name VARCHAR(255),
+    code VARCHAR(255),
+    description VARCHAR(255),
+    module VARCHAR(255),
+    type VARCHAR(255) CHECK (type IN ('MENU', 'BUTTON', 'API')),
+    status VARCHAR(255) CHECK (status IN ('ACTIVE', 'INACTIVE')),
+    sort_order INTEGER,
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6),
+    CONSTRAINT pk_permissions PRIMARY KEY (id),
+    CONSTRAINT uk_permissions_name UNIQUE (name),
+    CONSTRAINT uk_permissions_code UNIQUE (code)
+);
+
+CREATE TABLE role_permissions (
+    role_id BIGINT NOT NULL,
+    permission_id BIGINT NOT NULL,
+    CONSTRAINT pk_role_permissions PRIMARY KEY (permission_id, role_id),
+    CONSTRAINT fk_role_permissions_role FOREIGN KEY (role_id) REFERENCES roles (id),
+    CONSTRAINT fk_role_permissions_permission FOREIGN KEY (permission_id) REFERENCES permissions (id)
+);
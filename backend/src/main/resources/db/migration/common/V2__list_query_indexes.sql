@@ -0,0 +1,23 @@
+-- 列表查询使用的索引：等值过滤列在前，排序列（以及用于游标定位的id）在后，
+-- 过滤后可以直接按索引顺序读取一页，不需要排序整个结果集
+
+-- 用户列表：按状态、角色过滤，默认按id倒序
+CREATE INDEX idx_users_status_id ON users (status, id);
+CREATE INDEX idx_users_role_id ON users (role, id);
+CREATE INDEX idx_users_status_role_id ON users (status, role, id);
+-- 按创建时间、姓名排序（username、email已有唯一索引）
+CREATE INDEX idx_users_created_at_id ON users (created_at, id);
+CREATE INDEX idx_users_full_name ON users (full_name);
+
+-- 角色列表按排序字段排序；启用角色列表按状态过滤后按排序字段排序
+CREATE INDEX idx_roles_sort_order_id ON roles (sort_order, id);
+CREATE INDEX idx_roles_status_sort_order ON roles (status, sort_order);
+CREATE INDEX idx_roles_created_at_id ON roles (created_at, id);
+
+-- 权限列表：按类型过滤，按排序字段或创建时间排序
+CREATE INDEX idx_permissions_type_id ON permissions (type, id);
+CREATE INDEX idx_permissions_sort_order_id ON permissions (sort_order, id);
+CREATE INDEX idx_permissions_created_at_id ON permissions (created_at, id);
+
+-- 按角色查权限（主键以permission_id开头，只能用于按权限查角色）
+CREATE INDEX idx_role_permissions_role_id ON role_permissions (role_id, permission_id);
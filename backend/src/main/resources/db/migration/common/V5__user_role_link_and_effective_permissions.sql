@@ -0,0 +1,25 @@
+-- 用户关联到角色实体：role_id按角色代码与users.role对应，角色删除时置空
+ALTER TABLE users ADD COLUMN role_id BIGINT;
+ALTER TABLE users ADD CONSTRAINT fk_users_role FOREIGN KEY (role_id) REFERENCES roles (id) ON DELETE SET NULL;
+-- 按角色分批遍历用户（维护有效权限时使用）
+CREATE INDEX idx_users_role_entity_id ON users (role_id, id);
+
+UPDATE users SET role_id = (SELECT r.id FROM roles r WHERE r.code = users.role);
+
+-- 用户的有效权限（用户 -> 启用的角色 -> 角色权限），由EffectivePermissionService增量维护。
+-- 主键(user_id, permission_id)用于查询用户的权限，(permission_id, user_id)用于查询拥有某权限的用户
+CREATE TABLE user_effective_permissions (
+    user_id BIGINT NOT NULL,
+    permission_id BIGINT NOT NULL,
+    CONSTRAINT pk_user_effective_permissions PRIMARY KEY (user_id, permission_id),
+    CONSTRAINT fk_user_effective_permissions_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    CONSTRAINT fk_user_effective_permissions_permission FOREIGN KEY (permission_id) REFERENCES permissions (id) ON DELETE CASCADE
+);
+CREATE INDEX idx_user_effective_permissions_permission ON user_effective_permissions (permission_id, user_id);
+
+INSERT INTO user_effective_permissions (user_id, permission_id)
+SELECT u.id, rp.permission_id
+FROM users u
+JOIN roles r ON r.id = u.role_id
+JOIN role_permissions rp ON rp.role_id = r.id
+WHERE r.status = 'ACTIVE';
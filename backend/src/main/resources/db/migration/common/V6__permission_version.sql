@@ -0,0 +1,7 @@
+-- 权限版本号：角色权限分配等变更时在同一事务内加一，客户端据此判断缓存的权限数据是否过期
+CREATE TABLE permission_version (
+    id INT NOT NULL,
+    version BIGINT NOT NULL,
+    CONSTRAINT pk_permission_version PRIMARY KEY (id)
+);
+INSERT INTO permission_version (id, version) VALUES (1, 0);
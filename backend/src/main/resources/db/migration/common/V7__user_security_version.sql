@@ -0,0 +1,3 @@
+-- 用户安全版本：改用户名/角色/状态、重置密码时与用户行在同一次写入中加一，
+-- 令牌和会话中记录签发时的版本，与库中版本不一致即失效；重启和多实例部署下同样有效
+ALTER TABLE users ADD COLUMN security_version BIGINT DEFAULT 0 NOT NULL;
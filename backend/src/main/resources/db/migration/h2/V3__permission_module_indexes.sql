@@ -0,0 +1,3 @@
+-- 权限按模块、状态查询（H2不支持部分索引，使用完整的组合索引）
+CREATE INDEX idx_permissions_module_status_sort ON permissions (module, status, sort_order);
+CREATE INDEX idx_permissions_status_module_sort ON permissions (status, module, sort_order);
@@ -0,0 +1,2 @@
+-- 搜索用的trigram索引依赖pg_trgm扩展（需要数据库的CREATE权限，或由DBA预先安装）
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
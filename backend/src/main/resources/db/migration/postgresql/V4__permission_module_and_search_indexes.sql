@@ -0,0 +1,22 @@
+-- PostgreSQL专用索引。使用CONCURRENTLY避免建索引期间锁表，Flyway会在事务外执行本脚本
+-- （Flyway不允许同一脚本混用事务内外的语句，pg_trgm扩展在V3中单独安装）。语句都带IF NOT EXISTS，中途失败后可以重新执行
+
+-- 权限按模块过滤、按模块排序
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_permissions_module_id ON permissions (module, id);
+-- 启用的权限按模块和排序字段读取（菜单、权限树），部分索引只包含启用的行
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_permissions_active_module_sort
+    ON permissions (module, sort_order) WHERE status = 'ACTIVE';
+-- 启用的角色按排序字段读取
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_roles_active_sort
+    ON roles (sort_order) WHERE status = 'ACTIVE';
+
+-- 搜索使用LIKE '%x%'（包含）和LIKE 'x%'（前缀），普通B树索引在非C排序规则下都用不上，
+-- trigram GIN索引对两种匹配都有效；多字段OR搜索时各字段索引通过BitmapOr合并
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_username_trgm ON users USING gin (username gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_full_name_trgm ON users USING gin (full_name gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_email_trgm ON users USING gin (email gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_roles_name_trgm ON roles USING gin (name gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_roles_code_trgm ON roles USING gin (code gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_permissions_name_trgm ON permissions USING gin (name gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_permissions_code_trgm ON permissions USING gin (code gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_permissions_module_trgm ON permissions USING gin (module gin_trgm_ops);
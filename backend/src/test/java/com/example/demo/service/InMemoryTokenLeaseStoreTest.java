@@ -0,0 +1,74 @@
+package com.example.demo.service;
+
+import com.example.demo.util.RateLimitBucket;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryTokenLeaseStoreTest extends TokenLeaseStoreContractTest {
+
+    @Override
+    protected TokenLeaseStore store() {
+        return new InMemoryTokenLeaseStore();
+    }
+
+    // 可切换为故障状态的存储，模拟共享存储宕机和恢复
+    private static final class FlakyStore implements TokenLeaseStore {
+        final TokenLeaseStore delegate = new InMemoryTokenLeaseStore();
+        final AtomicBoolean failing = new AtomicBoolean();
+
+        @Override
+        public Lease lease(String key, long capacity, long refillPeriodMillis, long requested) {
+            if (failing.get()) {
+                throw new IllegalStateException("连接被拒绝");
+            }
+            return delegate.lease(key, capacity, refillPeriodMillis, requested);
+        }
+    }
+
+    @Test
+    void fallsBackToLocalBucketAfterStoreFailure() throws InterruptedException {
+        FlakyStore flaky = new FlakyStore();
+        CountingStore store = new CountingStore(flaky);
+        DistributedRateLimiter limiter = new DistributedRateLimiter(store, Duration.ofMillis(500));
+        RateLimitBucket bucket = limiter.bucket("login:1", 100, Duration.ofMinutes(1), 10, localFallback(2));
+
+        flaky.failing.set(true);
+
+        // 存储异常后由本地后备桶限流，且在重试间隔内不再访问共享存储
+        assertTrue(bucket.tryConsume(1));
+        assertTrue(bucket.tryConsumeAndReturnRemaining(1).isConsumed());
+        assertFalse(bucket.tryConsume(1));
+        assertEquals(1, store.leases.get());
+
+        flaky.failing.set(false);
+        Thread.sleep(700);
+
+        // 重试间隔结束后恢复使用共享桶，本地后备桶已耗尽也能消费
+        assertTrue(bucket.tryConsume(1));
+        assertEquals(2, store.leases.get());
+    }
+
+    @Test
+    void storeFailureAffectsOtherBucketsOfSameLimiter() {
+        FlakyStore flaky = new FlakyStore();
+        CountingStore store = new CountingStore(flaky);
+        DistributedRateLimiter limiter = new DistributedRateLimiter(store, Duration.ofMinutes(1));
+        RateLimitBucket first = limiter.bucket("login:1", 100, Duration.ofMinutes(1), 10, localFallback(1));
+        RateLimitBucket second = limiter.bucket("login:2", 100, Duration.ofMinutes(1), 10, localFallback(1));
+
+        flaky.failing.set(true);
+        assertTrue(first.tryConsume(1));
+        flaky.failing.set(false);
+
+        // 故障标记属于整个限流器，其他键同样退回本地桶，不再逐个探测共享存储
+        assertTrue(second.tryConsume(1));
+        assertFalse(second.tryConsume(1));
+        assertEquals(1, store.leases.get());
+    }
+}
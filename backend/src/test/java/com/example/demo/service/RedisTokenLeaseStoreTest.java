@@ -0,0 +1,74 @@
+package com.example.demo.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 在进程内的Redis服务上执行限流Lua脚本
+class RedisTokenLeaseStoreTest extends TokenLeaseStoreContractTest {
+
+    private static RedisServer server;
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        server = RedisServer.newRedisServer().start();
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(server.getHost(), server.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+
+        // 与RedisConfig中的序列化配置一致
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        redisTemplate.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+
+        // 预先建立连接并加载脚本，避免首次调用的耗时超过测试中较短的补充周期
+        new RedisTokenLeaseStore(redisTemplate).lease("warmup", 1, 1_000, 1);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Override
+    protected TokenLeaseStore store() {
+        return new RedisTokenLeaseStore(redisTemplate);
+    }
+
+    @Test
+    void stateIsStoredUnderPrefixedKeyWithExpiry() {
+        store().lease("login:42", 5, 60_000, 2);
+
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            byte[] tokens = connection.hashCommands().hGet(
+                    "rate:login:42".getBytes(StandardCharsets.UTF_8), "tokens".getBytes(StandardCharsets.UTF_8));
+            assertEquals("3", new String(tokens, StandardCharsets.UTF_8));
+        }
+        Long ttl = redisTemplate.getExpire("rate:login:42");
+        assertTrue(ttl != null && ttl > 0 && ttl <= 60);
+    }
+}
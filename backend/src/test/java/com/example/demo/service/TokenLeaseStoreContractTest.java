@@ -0,0 +1,140 @@
+package com.example.demo.service;
+
+import com.example.demo.util.RateLimitBucket;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 分别用各TokenLeaseStore实现驱动DistributedRateLimiter，验证共享桶的租用语义一致
+abstract class TokenLeaseStoreContractTest {
+
+    protected abstract TokenLeaseStore store();
+
+    // 记录租用次数的包装，用于确认本地余额和取空标记避免了对共享存储的访问
+    static final class CountingStore implements TokenLeaseStore {
+        final TokenLeaseStore delegate;
+        final AtomicInteger leases = new AtomicInteger();
+
+        CountingStore(TokenLeaseStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Lease lease(String key, long capacity, long refillPeriodMillis, long requested) {
+            leases.incrementAndGet();
+            return delegate.lease(key, capacity, refillPeriodMillis, requested);
+        }
+    }
+
+    // 每分钟capacity个令牌的本地后备桶；共享存储可用时不应被用到
+    static RateLimitBucket localFallback(long capacity) {
+        Bandwidth bandwidth = Bandwidth.classic(capacity, Refill.intervally(capacity, Duration.ofMinutes(1)));
+        return RateLimitBucket.local(Bucket.builder().addLimit(bandwidth).build());
+    }
+
+    private static String uniqueKey() {
+        return "test:" + UUID.randomUUID();
+    }
+
+    @Test
+    void leaseGrantsAtMostRemainingTokens() {
+        TokenLeaseStore store = store();
+        String key = uniqueKey();
+
+        TokenLeaseStore.Lease first = store.lease(key, 5, 60_000, 3);
+        TokenLeaseStore.Lease second = store.lease(key, 5, 60_000, 3);
+        TokenLeaseStore.Lease third = store.lease(key, 5, 60_000, 3);
+
+        assertEquals(3, first.getGranted());
+        assertEquals(2, second.getGranted());
+        assertEquals(0, third.getGranted());
+        assertTrue(first.getTtlMillis() > 0 && first.getTtlMillis() <= 60_000);
+        assertTrue(third.getTtlMillis() <= first.getTtlMillis());
+    }
+
+    @Test
+    void twoNodesShareCapacityThroughBatchedLeases() {
+        CountingStore store = new CountingStore(store());
+        DistributedRateLimiter nodeA = new DistributedRateLimiter(store, Duration.ofMinutes(1));
+        DistributedRateLimiter nodeB = new DistributedRateLimiter(store, Duration.ofMinutes(1));
+        String key = uniqueKey();
+        RateLimitBucket bucketA = nodeA.bucket(key, 10, Duration.ofMinutes(1), 4, localFallback(1));
+        RateLimitBucket bucketB = nodeB.bucket(key, 10, Duration.ofMinutes(1), 4, localFallback(1));
+
+        int consumed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (bucketA.tryConsume(1)) {
+                consumed++;
+            }
+            if (bucketB.tryConsume(1)) {
+                consumed++;
+            }
+        }
+
+        // 两个节点合计不超过共享容量；A、B各租4个，随后A租到剩余2个、B租到0个
+        assertEquals(10, consumed);
+        assertEquals(4, store.leases.get());
+    }
+
+    @Test
+    void exhaustedBucketRejectsWithoutStoreAccessUntilReset() throws InterruptedException {
+        CountingStore store = new CountingStore(store());
+        DistributedRateLimiter limiter = new DistributedRateLimiter(store, Duration.ofMinutes(1));
+        RateLimitBucket bucket = limiter.bucket(uniqueKey(), 3, Duration.ofMillis(500), 2, localFallback(1));
+
+        assertTrue(bucket.tryConsume(1));
+        assertTrue(bucket.tryConsume(1));
+        assertTrue(bucket.tryConsume(1));
+        assertFalse(bucket.tryConsume(1));
+        int leases = store.leases.get();
+
+        // 共享桶已取空，本周期内的拒绝不再访问共享存储，也不退回本地后备桶
+        for (int i = 0; i < 5; i++) {
+            assertFalse(bucket.tryConsume(1));
+            assertFalse(bucket.tryConsumeAndReturnRemaining(1).isConsumed());
+        }
+        assertEquals(leases, store.leases.get());
+
+        Thread.sleep(700);
+
+        assertTrue(bucket.tryConsume(1));
+        assertEquals(leases + 1, store.leases.get());
+    }
+
+    @Test
+    void windowResetRefillsSharedBucketForAllNodes() throws InterruptedException {
+        TokenLeaseStore store = store();
+        String key = uniqueKey();
+        RateLimitBucket bucketA = new DistributedRateLimiter(store, Duration.ofMinutes(1))
+                .bucket(key, 2, Duration.ofMillis(500), 2, localFallback(1));
+        RateLimitBucket bucketB = new DistributedRateLimiter(store, Duration.ofMinutes(1))
+                .bucket(key, 2, Duration.ofMillis(500), 2, localFallback(1));
+
+        assertTrue(bucketA.tryConsume(2));
+        assertFalse(bucketB.tryConsume(1));
+
+        Thread.sleep(700);
+
+        // 新周期的容量由最先租用的节点取得，总量仍不超过容量
+        assertTrue(bucketB.tryConsume(2));
+        assertFalse(bucketA.tryConsume(1));
+    }
+
+    @Test
+    void probeReportsLeaseBalance() {
+        DistributedRateLimiter limiter = new DistributedRateLimiter(store(), Duration.ofMinutes(1));
+        RateLimitBucket bucket = limiter.bucket(uniqueKey(), 10, Duration.ofMinutes(1), 4, localFallback(1));
+
+        assertEquals(3, bucket.tryConsumeAndReturnRemaining(1).getRemainingTokens());
+        assertEquals(1, bucket.tryConsumeAndReturnRemaining(2).getRemainingTokens());
+    }
+}
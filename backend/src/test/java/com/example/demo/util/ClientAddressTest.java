@@ -0,0 +1,106 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientAddressTest {
+
+    private static final long UNPARSED_HIGH = 0x0100_0000_0000_0000L;
+
+    private static long[] parse(String address) {
+        long[] key = new long[2];
+        ClientAddress.parse(address, key);
+        return key;
+    }
+
+    @Test
+    void ipv4IsMappedIntoIpv6Space() {
+        assertArrayEquals(new long[]{0L, 0x0000_FFFF_C0A8_010AL}, parse("192.168.1.10"));
+        assertArrayEquals(parse("192.168.1.10"), parse("::ffff:192.168.1.10"));
+        assertArrayEquals(parse("192.168.1.10"), parse("::ffff:c0a8:10a"));
+    }
+
+    @Test
+    void compressedAndFullFormsGiveTheSameKey() {
+        long[] expected = {0x2001_0DB8_0000_0000L, 1L};
+        assertArrayEquals(expected, parse("2001:db8::1"));
+        assertArrayEquals(expected, parse("2001:0db8:0000:0000:0000:0000:0000:0001"));
+        assertArrayEquals(expected, parse("2001:DB8:0:0:0:0:0:1"));
+    }
+
+    @Test
+    void compressionAtEitherEnd() {
+        assertArrayEquals(new long[]{0L, 1L}, parse("::1"));
+        assertArrayEquals(new long[]{0L, 0L}, parse("::"));
+        assertArrayEquals(new long[]{0x2001_0DB8_0000_0000L, 0L}, parse("2001:db8::"));
+        assertArrayEquals(new long[]{0x2001_0DB8_0001_0002L, 0x0003_0004_0005_0000L}, parse("2001:db8:1:2:3:4:5::"));
+        assertArrayEquals(new long[]{0L, 0x0005_0006_0007_0008L}, parse("::5:6:7:8"));
+    }
+
+    @Test
+    void embeddedIpv4OccupiesTheLastTwoGroups() {
+        assertArrayEquals(new long[]{0x0064_FF9B_0000_0000L, 0xC000_0221L}, parse("64:ff9b::192.0.2.33"));
+        assertArrayEquals(new long[]{0x0001_0002_0003_0004L, 0x0005_0006_0A00_0001L}, parse("1:2:3:4:5:6:10.0.0.1"));
+    }
+
+    @Test
+    void bracketsPortAndZoneAreStripped() {
+        assertArrayEquals(parse("2001:db8::1"), parse("[2001:db8::1]:8080"));
+        assertArrayEquals(parse("2001:db8::1"), parse(" [2001:db8::1] "));
+        assertArrayEquals(new long[]{0xFE80_0000_0000_0000L, 1L}, parse("fe80::1%eth0"));
+    }
+
+    @Test
+    void reservedPrefixesFallBackToHashedKeys() {
+        for (String reserved : new String[]{"100::1", "0100::1", "200::", "3ff:ffff::1"}) {
+            long[] key = parse(reserved);
+            assertEquals(UNPARSED_HIGH, key[0], reserved);
+            assertTrue(ClientAddress.isReserved(key[0]));
+        }
+        // 保留前缀以外的地址正常解析
+        assertArrayEquals(new long[]{0x0400_0000_0000_0000L, 1L}, parse("400::1"));
+        assertFalse(ClientAddress.isReserved(0x0400_0000_0000_0000L));
+        assertFalse(ClientAddress.isReserved(0L));
+    }
+
+    @Test
+    void malformedAddressesFallBackToHashedKeys() {
+        String[] malformed = {"not-an-ip", "256.1.1.1", "1.2.3", "1.2.3.4.5", "1:2:3:4:5:6:7:8:9",
+                "1::2::3", "12345::", "1:2:3:4:5:6:7:8::", ":1:2", "1:", "", "1:2:3:4:5:6:7:1.2.3.4"};
+        for (String address : malformed) {
+            assertEquals(UNPARSED_HIGH, parse(address)[0], address);
+        }
+        assertArrayEquals(parse("not-an-ip"), parse("not-an-ip"));
+        assertNotEquals(parse("not-an-ip")[1], parse("not-an-ip2")[1]);
+        assertEquals(UNPARSED_HIGH, parse(null)[0]);
+    }
+
+    @Test
+    void requestUsesFirstForwardedAddressThenRealIpThenRemoteAddress() {
+        long[] key = new long[2];
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.9");
+        request.addHeader("X-Real-IP", "198.51.100.2");
+        request.addHeader("X-Forwarded-For", "203.0.113.7, 10.0.0.1");
+        ClientAddress.parse(request, key);
+        assertArrayEquals(parse("203.0.113.7"), key);
+
+        request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.9");
+        request.addHeader("X-Real-IP", "198.51.100.2");
+        ClientAddress.parse(request, key);
+        assertArrayEquals(parse("198.51.100.2"), key);
+
+        request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.9");
+        ClientAddress.parse(request, key);
+        assertArrayEquals(parse("10.0.0.9"), key);
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.demo.util;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTableTest {
+
+    private static final long HIGH = 0x2001_0DB8_0000_0000L;
+
+    // 每分钟1个令牌的本地桶，并按键统计创建次数
+    private static final class CountingFactory implements RateLimiterTable.BucketFactory {
+        final Map<Long, AtomicInteger> created = new ConcurrentHashMap<>();
+
+        @Override
+        public RateLimitBucket create(long high, long low) {
+            created.computeIfAbsent(low, key -> new AtomicInteger()).incrementAndGet();
+            Bandwidth bandwidth = Bandwidth.classic(1, Refill.intervally(1, Duration.ofMinutes(1)));
+            return RateLimitBucket.local(Bucket.builder().addLimit(bandwidth).build());
+        }
+
+        int created(long low) {
+            AtomicInteger count = created.get(low);
+            return count != null ? count.get() : 0;
+        }
+    }
+
+    private static long ipv4(int a, int b, int c, int d) {
+        return 0x0000_FFFF_0000_0000L | ((long) a << 24) | ((long) b << 16) | ((long) c << 8) | d;
+    }
+
+    @Test
+    void sameKeyReturnsTheSameBucket() {
+        CountingFactory factory = new CountingFactory();
+        RateLimiterTable table = new RateLimiterTable(factory, 1000, 60);
+
+        RateLimitBucket first = table.get(HIGH, 1);
+        assertSame(first, table.get(HIGH, 1));
+        assertNotSame(first, table.get(HIGH, 2));
+        assertSame(table.get("192.168.1.10"), table.get("::ffff:192.168.1.10"));
+        assertEquals(1, factory.created(1));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    void idleEntriesExpireWhileRecentlyUsedOnesAreKept() {
+        CountingFactory factory = new CountingFactory();
+        RateLimiterTable table = new RateLimiterTable(factory, 1000, 5);
+
+        RateLimitBucket idle = table.get(HIGH, 1);
+        RateLimitBucket active = table.get(HIGH, 2);
+        table.expire(1);
+        table.expire(3);
+        assertSame(active, table.get(HIGH, 2));
+
+        table.expire(5);
+        assertEquals(1, table.size());
+        assertSame(active, table.get(HIGH, 2));
+        assertNotSame(idle, table.get(HIGH, 1));
+        assertEquals(2, factory.created(1));
+        assertEquals(1, factory.created(2));
+
+        table.expire(20);
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void overflowKeysAreLimitedPerNetwork() {
+        CountingFactory factory = new CountingFactory();
+        // 16个分片，每个分片只能登记1个条目
+        RateLimiterTable table = new RateLimiterTable(factory, 16, 60);
+
+        // 10.x.y.1，每个地址位于不同的/24网段
+        List<Long> registered = new ArrayList<>();
+        List<Long> overflowed = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long low = ipv4(10, i >>> 8, i & 0xFF, 1);
+            table.get(0L, low);
+            // 溢出桶按网段键创建，不会以客户端自己的键创建桶
+            (factory.created(low) == 1 ? registered : overflowed).add(low);
+        }
+        assertTrue(registered.size() <= 16);
+        assertTrue(overflowed.size() >= 2);
+
+        // 溢出的客户端照常限流，每次得到同一个桶
+        long client = overflowed.get(0);
+        RateLimitBucket bucket = table.get(0L, client);
+        assertSame(bucket, table.get(0L, client));
+        assertTrue(bucket.tryConsume(1));
+        assertFalse(table.get(0L, client).tryConsume(1));
+
+        // 同一/24网段的其他地址共用溢出桶
+        assertSame(bucket, table.get(0L, client + 1));
+        assertFalse(table.get(0L, client + 1).tryConsume(1));
+
+        // 已登记的客户端不受溢出桶影响
+        assertTrue(table.get(0L, registered.get(0)).tryConsume(1));
+
+        // 溢出路径不为每个请求建桶
+        int before = factory.created.values().stream().mapToInt(AtomicInteger::get).sum();
+        for (long low : overflowed) {
+            table.get(0L, low);
+        }
+        assertEquals(before, factory.created.values().stream().mapToInt(AtomicInteger::get).sum());
+        assertTrue(table.expire(1) > 0);
+    }
+
+    @Test
+    void ipv6OverflowKeysShareABucketPerSlash48() {
+        CountingFactory factory = new CountingFactory();
+        RateLimiterTable table = new RateLimiterTable(factory, 16, 60);
+        for (long low = 1; low <= 500; low++) {
+            table.get(HIGH, low);
+        }
+
+        // 同一/48下的另一个/64：无论是否登记过，都得到2001:db8::/48的溢出桶
+        long otherSubnet = HIGH | 0x0000_0000_0000_0001L;
+        RateLimitBucket first = table.get(otherSubnet, 1);
+        assertSame(first, table.get(otherSubnet, 2));
+        assertSame(first, table.get(HIGH | 0xFFFFL, 12345));
+    }
+
+    @Test
+    void capacityIsReusableAfterExpiredEntriesAreRebuiltAway() {
+        CountingFactory factory = new CountingFactory();
+        RateLimiterTable table = new RateLimiterTable(factory, 128, 5);
+
+        for (long low = 1; low <= 1000; low++) {
+            table.get(HIGH, low);
+        }
+        table.expire(1);
+        assertEquals(128, table.size());
+
+        // 全部过期成为墓碑，分片已满时在同一周期内重建
+        table.expire(10);
+        assertEquals(0, table.size());
+
+        table.expire(11);
+        for (long low = 1001; low <= 2000; low++) {
+            table.get(HIGH, low);
+        }
+        assertEquals(128, table.size());
+    }
+
+    @Test
+    void concurrentInsertExpireAndRebuildKeepLiveEntries() throws Exception {
+        CountingFactory factory = new CountingFactory();
+        RateLimiterTable table = new RateLimiterTable(factory, 4096, 5);
+        int workers = 4;
+        int rounds = 300;
+        int hotKeys = 64;
+        int coldPerRound = 16;
+
+        RateLimitBucket[] hot = new RateLimitBucket[hotKeys];
+        for (int i = 0; i < hotKeys; i++) {
+            hot[i] = table.get(HIGH, i);
+        }
+
+        CyclicBarrier barrier = new CyclicBarrier(workers + 1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong coldKeys = new AtomicLong(1_000_000);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int round = 1; round <= rounds; round++) {
+                        for (int i = 0; i < hotKeys; i++) {
+                            assertSame(hot[i], table.get(HIGH, i), "hot key " + i);
+                        }
+                        // 只访问一次的客户端，随后过期成为墓碑，触发分片重建
+                        for (int i = 0; i < coldPerRound; i++) {
+                            assertTrue(table.get(HIGH, coldKeys.getAndIncrement()) != null);
+                        }
+                        for (int i = 0; i < hotKeys; i++) {
+                            assertSame(hot[i], table.get(HIGH, i), "hot key " + i);
+                        }
+                        barrier.await(10, TimeUnit.SECONDS);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    barrier.reset();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // 当前线程充当维护线程，与请求线程并发推进时钟
+        long overflow = 0;
+        try {
+            for (int round = 1; round <= rounds && failure.get() == null; round++) {
+                overflow += table.expire(round);
+                barrier.await(10, TimeUnit.SECONDS);
+            }
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        assertNull(failure.get(), () -> "worker failed: " + failure.get());
+        assertEquals(0, overflow);
+
+        // 冷客户端全部过期后只剩热点客户端，且每个只建过一次桶
+        for (int round = rounds + 1; round <= rounds + 10; round++) {
+            for (int i = 0; i < hotKeys; i++) {
+                table.get(HIGH, i);
+            }
+            table.expire(round);
+        }
+        assertEquals(hotKeys, table.size());
+        for (int i = 0; i < hotKeys; i++) {
+            assertEquals(1, factory.created(i), "hot key " + i);
+            assertSame(hot[i], table.get(HIGH, i));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    // 逐刻度推进，记录每个值到期时的刻度
+    private static Map<Long, Long> expireTickByTick(TimingWheel<Long> wheel, long toTick) {
+        Map<Long, Long> expiredAt = new HashMap<>();
+        List<Long> expired = new ArrayList<>();
+        while (wheel.getCurrentTick() < toTick) {
+            long tick = wheel.getCurrentTick() + 1;
+            wheel.advance(tick, expired);
+            for (Long value : expired) {
+                expiredAt.put(value, tick);
+            }
+            expired.clear();
+        }
+        return expiredAt;
+    }
+
+    @Test
+    void entriesExpireExactlyAtTheirDeadlineAcrossLevelBoundaries() {
+        TimingWheel<Long> wheel = new TimingWheel<>(0L);
+        // 每层边界前后：64、4096、262144个刻度
+        long[] deadlines = {1, 5, 63, 64, 65, 127, 128, 4095, 4096, 4097, 5000, 262143, 262144, 262145, 300000};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+        assertEquals(deadlines.length, wheel.size());
+
+        Map<Long, Long> expiredAt = expireTickByTick(wheel, 300000);
+        for (long deadline : deadlines) {
+            assertEquals(deadline, expiredAt.get(deadline), "deadline " + deadline);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cascadeWorksFromAnUnalignedStartTick() {
+        long start = 4000;
+        TimingWheel<Long> wheel = new TimingWheel<>(start);
+        long[] deadlines = {4001, 4063, 4095, 4096, 4097, 8191, 8192, 266240, 266241};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+
+        Map<Long, Long> expiredAt = expireTickByTick(wheel, 266241);
+        for (long deadline : deadlines) {
+            assertEquals(deadline, expiredAt.get(deadline), "deadline " + deadline);
+        }
+    }
+
+    @Test
+    void deadlinesInThePastExpireOnTheNextTick() {
+        TimingWheel<Long> wheel = new TimingWheel<>(100L);
+        wheel.schedule(7L, 50);
+        wheel.schedule(8L, 100);
+
+        List<Long> expired = new ArrayList<>();
+        wheel.advance(101, expired);
+        assertEquals(List.of(7L, 8L), expired);
+    }
+
+    @Test
+    void deadlinesBeyondTheWheelSpanWaitForAnotherRotation() {
+        long span = 1L << 24;
+        TimingWheel<Long> wheel = new TimingWheel<>(0L);
+        wheel.schedule(1L, span + 10);
+
+        List<Long> expired = new ArrayList<>();
+        wheel.advance(span + 9, expired);
+        assertTrue(expired.isEmpty());
+        wheel.advance(span + 10, expired);
+        assertEquals(List.of(1L), expired);
+    }
+
+    @Test
+    void expiryOrderFollowsDeadlinesWhenAdvancingInJumps() {
+        Random random = new Random(42);
+        long start = 12345;
+        TimingWheel<Long> wheel = new TimingWheel<>(start);
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            long deadline = start + 1 + random.nextInt(300000);
+            wheel.schedule(deadline, deadline);
+        }
+
+        // 值即到期刻度：每次推进只返回范围内到期的条目，整体按到期刻度先后排列
+        List<Long> values = new ArrayList<>();
+        List<Long> all = new ArrayList<>();
+        long tick = start;
+        while (tick < start + 300001) {
+            long from = tick;
+            tick = Math.min(start + 300001, tick + 1 + random.nextInt(5000));
+            values.clear();
+            wheel.advance(tick, values);
+            for (Long value : values) {
+                assertTrue(value > from && value <= tick, "value " + value + " outside (" + from + ", " + tick + "]");
+            }
+            all.addAll(values);
+        }
+        assertEquals(count, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1) <= all.get(i), "out of order at " + i);
+        }
+        assertEquals(0, wheel.size());
+    }
+}
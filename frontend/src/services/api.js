@@ -119,7 +119,8 @@ export const authAPI = {
   login: (credentials) => api.post('/v2/auth/login', credentials),
   logout: () => {
     stopSessionCheck()
-    return api.post('/v2/auth/logout')
+    // 一并提交刷新令牌，服务端会同时撤销
+    return api.post('/v2/auth/logout', { refreshToken: localStorage.getItem('refreshToken') })
   },
   getCurrentUser: () => api.get('/v2/auth/me'),
   refreshToken: (refreshToken) => api.post('/v2/auth/refresh', { refreshToken }),